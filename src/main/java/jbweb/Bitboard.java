@@ -0,0 +1,133 @@
+package jbweb;
+
+import java.util.Arrays;
+
+public class Bitboard {
+    // Footprint of a row of 0 to 64 bits starting at bit 0, any building or block footprint shifted into place is one AND per row
+    private static final long[] widthMasks = new long[65];
+    static {
+        for (int w = 1; w <= 64; w++) {
+            widthMasks[w] = -1L >>> (64 - w);
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long[] bits;
+
+    /// Creates an empty grid of bits, stored as rows of 64-bit words.
+    public Bitboard(int _width, int _height) {
+        width = _width;
+        height = _height;
+        words = (width + 63) >> 6;
+        bits = new long[words * height];
+    }
+
+    /// Creates a copy of another Bitboard.
+    public Bitboard(Bitboard other) {
+        width = other.width;
+        height = other.height;
+        words = other.words;
+        bits = other.bits.clone();
+    }
+
+    /// Returns the width of the Bitboard in bits.
+    public int width() {
+        return width;
+    }
+
+    /// Returns the height of the Bitboard in rows.
+    public int height() {
+        return height;
+    }
+
+    // Mask of the bits in word wi that fall within [x, x + w)
+    private static long rowMask(int wi, int x, int w) {
+        int lo = Math.max(x, wi << 6) - (wi << 6);
+        int hi = Math.min(x + w, (wi << 6) + 64) - (wi << 6) - 1;
+        return (-1L << lo) & (-1L >>> (63 - hi));
+    }
+
+    /// Returns true if the bit at (x, y) is set. Bits outside the board are considered set.
+    public boolean get(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return true;
+        }
+        return (bits[y * words + (x >> 6)] & (1L << (x & 63))) != 0;
+    }
+
+    /// Sets the bit at (x, y).
+    public void set(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return;
+        }
+        bits[y * words + (x >> 6)] |= 1L << (x & 63);
+    }
+
+    /// Sets every bit within a rectangle, clipped to the board.
+    public void set(int x, int y, int w, int h) {
+        int x1 = Math.max(0, x), y1 = Math.max(0, y);
+        int x2 = Math.min(width, x + w), y2 = Math.min(height, y + h);
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+        for (int row = y1; row < y2; row++) {
+            for (int wi = x1 >> 6; wi <= (x2 - 1) >> 6; wi++) {
+                bits[row * words + wi] |= rowMask(wi, x1, x2 - x1);
+            }
+        }
+    }
+
+    /// Clears every bit within a rectangle, clipped to the board.
+    public void clear(int x, int y, int w, int h) {
+        int x1 = Math.max(0, x), y1 = Math.max(0, y);
+        int x2 = Math.min(width, x + w), y2 = Math.min(height, y + h);
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+        for (int row = y1; row < y2; row++) {
+            for (int wi = x1 >> 6; wi <= (x2 - 1) >> 6; wi++) {
+                bits[row * words + wi] &= ~rowMask(wi, x1, x2 - x1);
+            }
+        }
+    }
+
+    /// Returns true if any bit within a rectangle is set. A rectangle that leaves the board is considered set.
+    public boolean any(int x, int y, int w, int h) {
+        if (x < 0 || y < 0 || x + w > width || y + h > height) {
+            return true;
+        }
+
+        // Footprints that fit within a single word of each row only need the shifted footprint mask
+        if (w > 0 && (x & 63) + w <= 64) {
+            long mask = widthMasks[w] << (x & 63);
+            for (int row = y; row < y + h; row++) {
+                if ((bits[row * words + (x >> 6)] & mask) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int row = y; row < y + h; row++) {
+            for (int wi = x >> 6; wi <= (x + w - 1) >> 6; wi++) {
+                if ((bits[row * words + wi] & rowMask(wi, x, w)) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /// Returns true if any bit within a rectangle is set, ignoring the parts of the rectangle that leave the board.
+    public boolean anyClipped(int x, int y, int w, int h) {
+        int x1 = Math.max(0, x), y1 = Math.max(0, y);
+        int x2 = Math.min(width, x + w), y2 = Math.min(height, y + h);
+        return x1 < x2 && y1 < y2 && any(x1, y1, x2 - x1, y2 - y1);
+    }
+
+    /// Clears every bit.
+    public void clear() {
+        Arrays.fill(bits, 0L);
+    }
+}
@@ -12,17 +12,20 @@ public class Block {
     private List<TilePosition> smallTiles = new ArrayList<>();
     private List<TilePosition> mediumTiles = new ArrayList<>();
     private List<TilePosition> largeTiles = new ArrayList<>();
+    private final List<Piece> pieces;
     private final boolean proxy;
     private final boolean defensive;
 
     public Block() {
         tile = null;
+        pieces = new ArrayList<>();
         proxy = false;
         defensive = false;
     }
 
     public Block(TilePosition _tile, List<Piece> _pieces, boolean _proxy, boolean _defensive) {
         tile = _tile;
+        pieces = _pieces;
         proxy = _proxy;
         defensive = _defensive;
 
@@ -73,6 +76,11 @@ public class Block {
         h += rowHeight;
     }
 
+    /// Returns the pieces this Block was arranged from.
+    List<Piece> getPieces() {
+        return pieces;
+    }
+
     /// Returns the top left TilePosition of this Block.
     public TilePosition getTilePosition() {
         return tile;
@@ -93,19 +101,32 @@ public class Block {
         return largeTiles;
     }
 
+    /// Returns true if a Pylon at any of this Blocks 2x2 (small) locations would power a building of the given BWAPI::UnitType placed here.
+    public boolean isPowered(TilePosition here, UnitType type) {
+        for (TilePosition small : smallTiles) {
+            if (PowerGrid.powers(small.x, small.y, here.x, here.y, type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /// Inserts a 2x2 (small) building at this location.
     public void insertSmall(TilePosition here) {
         smallTiles.add(here);
+        PlacementIndex.add(PlacementIndex.SMALL, here);
     }
 
     /// Inserts a 3x2 (medium) building at this location.
     public void insertMedium(TilePosition here) {
         mediumTiles.add(here);
+        PlacementIndex.add(PlacementIndex.MEDIUM, here);
     }
 
     /// Inserts a 4x3 (large) building at this location.
     public void insertLarge(TilePosition here) {
         largeTiles.add(here);
+        PlacementIndex.add(PlacementIndex.LARGE, here);
     }
 
     /// Returns the width of the Block in TilePositions.
@@ -0,0 +1,265 @@
+package jbweb;
+
+import bwapi.*;
+import bwem.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+public class BlockOptimizer {
+    private static class Template {
+        final int w;
+        final int h;
+        final int value;
+        final int small, medium, large;
+        final List<Piece> pieces;
+
+        Template(int _w, int _h, List<Piece> _pieces) {
+            w = _w;
+            h = _h;
+            pieces = _pieces;
+            small = Blocks.countPieces(pieces, Piece.Small);
+            medium = Blocks.countPieces(pieces, Piece.Medium);
+            large = Blocks.countPieces(pieces, Piece.Large);
+            int count = 0;
+            for (Piece piece : pieces) {
+                if (piece != Piece.Row) {
+                    count++;
+                }
+            }
+            value = count;
+        }
+    }
+
+    static class Placement {
+        final int x;
+        final int y;
+        private final Template template;
+        private final Block block;
+
+        Placement(int _x, int _y, Template _template, Block _block) {
+            x = _x;
+            y = _y;
+            template = _template;
+            block = _block;
+        }
+
+        List<Piece> getPieces() {
+            return template.pieces;
+        }
+
+        /// Returns the existing Block this placement keeps the pieces of, or null if it's a new Block.
+        Block getBlock() {
+            return block;
+        }
+
+        /// Returns true if this placement is an existing Block that wasn't moved.
+        boolean isUnmoved() {
+            return block != null && block.getTilePosition().x == x && block.getTilePosition().y == y;
+        }
+    }
+
+    private final Area area;
+    private final List<Block> movable = new ArrayList<>();
+    private final TilePosition origin;
+    private final List<Template> templates = new ArrayList<>();
+    private final Bitboard blocked;
+    private final Bitboard outside;
+    private final Bitboard creep;
+    private final Bitboard occupied;
+    private final boolean zerg;
+    private final boolean main;
+    private final HashMap<Piece, Integer> mainPieces;
+    private final Random random = new Random(0);
+    private List<Placement> current = new ArrayList<>();
+    private List<Placement> best = new ArrayList<>();
+    private int score = 0;
+    private int bestScore = 0;
+    private int initialScore = 0;
+
+    /// Prepares a search over the given BWEM::Area, where the given Blocks may be moved or removed.
+    /// Layouts are kept within the caps on pieces in the main, starting from the given counts which include the current layout.
+    BlockOptimizer(Area _area, List<Block> blocks, List<TilePosition> sizes, List<List<Piece>> pieces, HashMap<Piece, Integer> _mainPieces) {
+        area = _area;
+        zerg = JBWEB.game.self().getRace() == Race.Zerg;
+        main = area == JBWEB.getMainArea();
+        mainPieces = new HashMap<>(_mainPieces);
+        origin = new TilePosition(area.getTopLeft().x - 1, area.getTopLeft().y - 1);
+        int width = area.getBottomRight().x - area.getTopLeft().x + 3;
+        int height = area.getBottomRight().y - area.getTopLeft().y + 3;
+        for (int i = 0; i < sizes.size(); i++) {
+            templates.add(new Template(sizes.get(i).x, sizes.get(i).y, pieces.get(i)));
+        }
+
+        // Existing Blocks keep their own pieces, which may be arranged for the direction they face
+        List<Template> blockTemplates = new ArrayList<>();
+        for (Block block : blocks) {
+            if (!block.getPieces().isEmpty()) {
+                movable.add(block);
+                blockTemplates.add(new Template(block.width(), block.height(), block.getPieces()));
+            }
+        }
+
+        // Footprints of the movable Blocks are reserved by them, don't treat them as obstacles
+        Bitboard movableFootprints = new Bitboard(width, height);
+        for (Block block : movable) {
+            movableFootprints.set(block.getTilePosition().x - origin.x, block.getTilePosition().y - origin.y, block.width(), block.height());
+        }
+
+        blocked = new Bitboard(width, height);
+        outside = new Bitboard(width, height);
+        creep = new Bitboard(width, height);
+        occupied = new Bitboard(width, height);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                TilePosition t = new TilePosition(origin.x + x, origin.y + y);
+                if (!t.isValid(JBWEB.game)) {
+                    blocked.set(x, y);
+                    outside.set(x, y);
+                    continue;
+                }
+                if (!JBWEB.mapBWEM.getMap().getTile(t).isBuildable() || (JBWEB.isReserved(t, 1, 1) && !movableFootprints.get(x, y))) {
+                    blocked.set(x, y);
+                }
+                if (JBWEB.mapBWEM.getMap().getArea(t) != area) {
+                    outside.set(x, y);
+                }
+                if (zerg && JBWEB.game.hasCreep(t)) {
+                    creep.set(x, y);
+                }
+            }
+        }
+
+        // Start from the current layout
+        for (int i = 0; i < movable.size(); i++) {
+            Block block = movable.get(i);
+            Template template = blockTemplates.get(i);
+            Placement placement = new Placement(block.getTilePosition().x - origin.x, block.getTilePosition().y - origin.y, template, block);
+            current.add(placement);
+            occupied.set(placement.x, placement.y, template.w, template.h);
+            score += template.value;
+        }
+        initialScore = score;
+        bestScore = score;
+        best = new ArrayList<>(current);
+    }
+
+    // Blocks need their footprint inside the Area and a one tile walking lane around them free of obstacles and other Blocks
+    private boolean canPlace(int x, int y, Template t) {
+        if (outside.any(x, y, t.w, t.h)
+                || blocked.any(x - 1, y - 1, t.w + 2, t.h + 2)
+                || occupied.any(x - 1, y - 1, t.w + 2, t.h + 2)) {
+            return false;
+        }
+        return !zerg || (creep.get(x, y) && creep.get(x + t.w - 1, y) && creep.get(x, y + t.h - 1) && creep.get(x + t.w - 1, y + t.h - 1));
+    }
+
+    // Blocks in the main count towards the caps on pieces each race needs there
+    private void countMain(Template t, int change) {
+        if (main) {
+            for (Piece piece : t.pieces) {
+                mainPieces.merge(piece, change, Integer::sum);
+            }
+        }
+    }
+
+    private boolean exceedsMainCaps(int x, int y, Template t) {
+        return Blocks.exceedsMainCaps(mainPieces, new TilePosition(origin.x + x, origin.y + y), t.small, t.medium, t.large);
+    }
+
+    private void add(Placement p) {
+        current.add(p);
+        occupied.set(p.x, p.y, p.template.w, p.template.h);
+        score += p.template.value;
+        countMain(p.template, 1);
+    }
+
+    private Placement remove(int index) {
+        Placement p = current.get(index);
+        current.set(index, current.get(current.size() - 1));
+        current.remove(current.size() - 1);
+        occupied.clear(p.x, p.y, p.template.w, p.template.h);
+        score -= p.template.value;
+        countMain(p.template, -1);
+        return p;
+    }
+
+    private boolean accept(int delta, double temperature) {
+        return delta >= 0 || random.nextDouble() < Math.exp(delta / temperature);
+    }
+
+    /// Runs simulated annealing over the layout for up to the given amount of milliseconds. Returns how many placements were gained.
+    int optimize(double timeLimit) {
+        if (templates.isEmpty()) {
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        long budget = (long) (timeLimit * 1000000.0);
+        double temperature = 1.0;
+        for (int iteration = 0; ; iteration++) {
+            if ((iteration & 255) == 0) {
+                long elapsed = System.nanoTime() - start;
+                if (elapsed > budget) {
+                    break;
+                }
+                temperature = 0.05 + 1.95 * (1.0 - (double) elapsed / budget);
+            }
+
+            int move = current.isEmpty() ? 0 : random.nextInt(3);
+
+            // Insert a random Block anywhere
+            if (move == 0) {
+                Template t = templates.get(random.nextInt(templates.size()));
+                int x = random.nextInt(occupied.width());
+                int y = random.nextInt(occupied.height());
+                if (canPlace(x, y, t) && !exceedsMainCaps(x, y, t)) {
+                    add(new Placement(x, y, t, null));
+                }
+            }
+
+            // Nudge or reshape an existing Block
+            else if (move == 1) {
+                int index = random.nextInt(current.size());
+                Placement old = remove(index);
+                Template t = random.nextBoolean() ? old.template : templates.get(random.nextInt(templates.size()));
+                Placement moved = new Placement(old.x + random.nextInt(5) - 2, old.y + random.nextInt(5) - 2, t, t == old.template ? old.block : null);
+                if (canPlace(moved.x, moved.y, t) && (t == old.template || !exceedsMainCaps(moved.x, moved.y, t)) && accept(t.value - old.template.value, temperature)) {
+                    add(moved);
+                } else {
+                    add(old);
+                }
+            }
+
+            // Remove an existing Block to make room for others
+            else {
+                int index = random.nextInt(current.size());
+                if (accept(-current.get(index).template.value, temperature)) {
+                    remove(index);
+                }
+            }
+
+            if (score > bestScore) {
+                bestScore = score;
+                best = new ArrayList<>(current);
+            }
+        }
+        return bestScore - initialScore;
+    }
+
+    /// Returns the Blocks that the best layout replaces.
+    List<Block> getMovable() {
+        return movable;
+    }
+
+    /// Returns the best layout found, in TilePositions.
+    List<Placement> getBest() {
+        List<Placement> layout = new ArrayList<>();
+        for (Placement p : best) {
+            layout.add(new Placement(p.x + origin.x, p.y + origin.y, p.template, p.block));
+        }
+        return layout;
+    }
+}
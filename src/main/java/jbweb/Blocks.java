@@ -1,6 +1,8 @@
 package jbweb;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -12,8 +14,173 @@ public class Blocks {
     private static List<Block> allBlocks = new ArrayList<>();
     private static HashMap<Area, Integer> typePerArea = new HashMap<>();
     private static HashMap<Piece, Integer> mainPieces = new HashMap<>();
+    private static Block blockGrid[][] = new Block[256][256];
+    private static SpatialIndex<Block> blockIndex = new SpatialIndex<>();
+    private static int maxBlockWidth = 0;
+    private static int maxBlockHeight = 0;
+    private static List<AreaSearch> areaSearches = new ArrayList<>();
+    private static HashSet<Area> searchedAreas = new HashSet<>();
+    private static double areaTimeLimit = 1.0;
+    private static boolean creepPlanning = false;
+    private static boolean creepGrid[][] = new boolean[256][256];
+    private static boolean frontierGrid[][] = new boolean[256][256];
+    private static ArrayDeque<TilePosition> creepFrontier = new ArrayDeque<>();
+    private static List<TilePosition> creepBlockSizes = new ArrayList<>();
+    private static List<List<Piece>> creepBlockPieces = new ArrayList<>();
+    private static HashSet<Block> creepBlocks = new HashSet<>();
 
-    private static int countPieces(List<Piece> pieces, Piece type) {
+    // Resumable search for production Blocks within a single Area
+    private static class AreaSearch {
+        private final Area area;
+        private final List<TilePosition> tiles = new ArrayList<>();
+        private List<Piece> pieces = null;
+        private int i = 20;
+        private int j = 20;
+        private int index = 0;
+
+        AreaSearch(Area _area) {
+            area = _area;
+
+            // Search tiles closest to the Base of this Area first
+            Position start = !area.getBases().isEmpty() ? area.getBases().get(0).getCenter() : new Position(area.getTop());
+            for (int x = area.getTopLeft().x; x <= area.getBottomRight().x; x++) {
+                for (int y = area.getTopLeft().y; y <= area.getBottomRight().y; y++) {
+                    TilePosition t = new TilePosition(x, y);
+                    if (t.isValid(JBWEB.game) && JBWEB.game.isBuildable(t) && JBWEB.mapBWEM.getMap().getArea(t) == area) {
+                        tiles.add(t);
+                    }
+                }
+            }
+            tiles.sort(Comparator.comparingDouble(t -> new Position(t.x * 32, t.y * 32).getDistance(start)));
+        }
+
+        // Returns true once every Block size has been tried at every tile
+        boolean run(long deadline) {
+            int steps = 0;
+            while (i > 0) {
+                if (pieces == null) {
+                    pieces = whichPieces(i, j, false, false);
+                }
+
+                while (!pieces.isEmpty() && index < tiles.size()) {
+                    if (++steps % 64 == 0 && System.nanoTime() > deadline) {
+                        return false;
+                    }
+
+                    TilePosition tile = tiles.get(index++);
+                    if (JBWEB.tilesWithinArea(area, tile, i, j) != i * j
+                            || (JBWEB.game.self().getRace() == Race.Zerg && !creepOnCorners(tile, i, j))) {
+                        continue;
+                    }
+
+                    if (canAddLateBlock(tile, i, j)) {
+                        insertBlock(tile, pieces);
+                    }
+                }
+
+                // Move on to the next Block size
+                pieces = null;
+                index = 0;
+                if (--j == 0) {
+                    j = 20;
+                    i--;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static TilePosition blockCenter(Block block) {
+        return new TilePosition(block.getTilePosition().x + block.width()/2, block.getTilePosition().y + block.height()/2);
+    }
+
+    private static void stampBlock(Block block, Block owner) {
+        TilePosition here = block.getTilePosition();
+        for (int x = here.x; x < here.x + block.width(); x++) {
+            for (int y = here.y; y < here.y + block.height(); y++) {
+                if (x < 0 || y < 0 || x >= 256 || y >= 256 || (owner == null && blockGrid[x][y] != block)) {
+                    continue;
+                }
+                blockGrid[x][y] = owner;
+            }
+        }
+    }
+
+    private static void addBlock(Block block) {
+        allBlocks.add(block);
+        stampBlock(block, block);
+        blockIndex.add(blockCenter(block), block);
+        maxBlockWidth = Math.max(maxBlockWidth, block.width());
+        maxBlockHeight = Math.max(maxBlockHeight, block.height());
+        PlacementIndex.addBlock(block);
+        JBWEB.addReserve(block.getTilePosition(), block.width(), block.height());
+    }
+
+    // Protoss Blocks need a Pylon at one of their 2x2 (small) pieces to power each of their larger pieces
+    private static boolean isSelfPowered(List<Piece> pieces) {
+        Block block = new Block(new TilePosition(0, 0), pieces, false, false);
+        for (TilePosition tile : block.getLargeTiles()) {
+            if (!block.isPowered(tile, UnitType.Protoss_Gateway)) {
+                return false;
+            }
+        }
+        for (TilePosition tile : block.getMediumTiles()) {
+            if (!block.isPowered(tile, UnitType.Protoss_Forge)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Keeps count of the pieces of Blocks in the main, which caps how many of each piece production Blocks add
+    private static void countMainPieces(TilePosition here, List<Piece> pieces, int change) {
+        if (JBWEB.mapBWEM.getMap().getArea(here) != JBWEB.getMainArea()) {
+            return;
+        }
+        for (Piece piece : pieces) {
+            mainPieces.merge(piece, change, Integer::sum);
+        }
+    }
+
+    // Returns true if a Block with these piece counts would go over the pieces each race needs in the main
+    private static boolean exceedsMainCaps(TilePosition tile, int smallCount, int mediumCount, int largeCount) {
+        return exceedsMainCaps(mainPieces, tile, smallCount, mediumCount, largeCount);
+    }
+
+    /// Same as exceedsMainCaps, against counts of the pieces in the main kept by a search such as the BlockOptimizer.
+    static boolean exceedsMainCaps(HashMap<Piece, Integer> mainPieces, TilePosition tile, int smallCount, int mediumCount, int largeCount) {
+        // Protoss caps large pieces in the main at 12 if we don't have necessary medium pieces
+        if (JBWEB.game.self().getRace() == Race.Protoss) {
+            if (mainPieces.get(Piece.Large) != null && mainPieces.get(Piece.Medium) != null) {
+                if (largeCount > 0 && JBWEB.mapBWEM.getMap().getArea(tile) == JBWEB.getMainArea() &&
+                        mainPieces.get(Piece.Large) >= 12 && mainPieces.get(Piece.Medium) < 10) {
+                    return true;
+                }
+            }
+        }
+
+        // Zerg only need 4 medium pieces and 2 small piece
+        if (JBWEB.game.self().getRace() == Race.Zerg) {
+            if (mainPieces.get(Piece.Medium) != null && mainPieces.get(Piece.Small) != null) {
+                if ((mediumCount > 0 && mainPieces.get(Piece.Medium) >= 4) ||
+                        (smallCount > 0 && mainPieces.get(Piece.Small) >= 2)) {
+                    return true;
+                }
+            }
+        }
+
+        // Terran only need about 20 depot spots
+        if (JBWEB.game.self().getRace() == Race.Terran) {
+            if (mainPieces.get(Piece.Medium) != null) {
+                if (mediumCount > 0 && mainPieces.get(Piece.Medium) >= 20) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    static int countPieces(List<Piece> pieces, Piece type) {
         int count = 0;
         for (Piece piece : pieces) {
         if (piece == type)
@@ -22,7 +189,7 @@ public class Blocks {
         return count;
     }
 
-    private static List<Piece> whichPieces(int width, int height, boolean faceUp, boolean faceLeft) {
+    static List<Piece> whichPieces(int width, int height, boolean faceUp, boolean faceLeft) {
         List<Piece> pieces = new ArrayList<>();
 
         // Zerg Block pieces
@@ -242,15 +409,13 @@ public class Blocks {
 
     private static boolean canAddBlock(TilePosition here, int width, int height) {
         // Check if a block of specified size would overlap any bases, resources or other blocks
-        for (int x = here.x - 1; x < here.x + width + 1; x++) {
-            for (int y = here.y - 1; y < here.y + height + 1; y++) {
-                TilePosition t = new TilePosition(x, y);
-                if (!t.isValid(JBWEB.game) || !JBWEB.mapBWEM.getMap().getTile(t).isBuildable() || JBWEB.isReserved(t, 1, 1)) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        TilePosition padded = new TilePosition(here.x - 1, here.y - 1);
+        return !JBWEB.isUnbuildableTerrain(padded, width + 2, height + 2, true) && !JBWEB.isReserved(padded, width + 2, height + 2);
+    }
+
+    // Blocks added after the game started also need to stay clear of buildings placed since then
+    private static boolean canAddLateBlock(TilePosition here, int width, int height) {
+        return canAddBlock(here, width, height) && JBWEB.isUsed(new TilePosition(here.x - 1, here.y - 1), width + 2, height + 2) == UnitType.None;
     }
 
     private static boolean canAddProxyBlock(TilePosition here, int width, int height) {
@@ -266,22 +431,20 @@ public class Blocks {
         return true;
     }
 
-    private static void insertBlock(TilePosition here, List<Piece> pieces) {
+    private static Block insertBlock(TilePosition here, List<Piece> pieces) {
         Block newBlock = new Block(here, pieces, false, false);
-        allBlocks.add(newBlock);
-        JBWEB.addReserve(here, newBlock.width(), newBlock.height());
+        addBlock(newBlock);
+        return newBlock;
     }
 
     private static void insertProxyBlock(TilePosition here, List<Piece> pieces) {
         Block newBlock = new Block(here, pieces, true, false);
-        allBlocks.add(newBlock);
-        JBWEB.addReserve(here, newBlock.width(), newBlock.height());
+        addBlock(newBlock);
     }
 
     private static void insertDefensiveBlock(TilePosition here, List<Piece> pieces) {
         Block newBlock = new Block(here, pieces, false, true);
-        allBlocks.add(newBlock);
-        JBWEB.addReserve(here, newBlock.width(), newBlock.height());
+        addBlock(newBlock);
     }
 
     private static boolean creepOnCorners(TilePosition here, int width, int height) {
@@ -292,6 +455,104 @@ public class Blocks {
         return b1 && b2 && b3 && b4;
     }
 
+    // Creep only spreads over buildable terrain, so tiles that can never get creep aren't sampled
+    private static void addFrontier(int x, int y) {
+        if (x < 0 || y < 0 || x >= JBWEB.game.mapWidth() || y >= JBWEB.game.mapHeight() || creepGrid[x][y] || frontierGrid[x][y]
+                || JBWEB.isUnbuildableTerrain(new TilePosition(x, y), 1, 1, false)) {
+            return;
+        }
+        frontierGrid[x][y] = true;
+        creepFrontier.add(new TilePosition(x, y));
+    }
+
+    private static boolean knownCreepOnCorners(TilePosition here, int width, int height) {
+        int x2 = here.x + width - 1;
+        int y2 = here.y + height - 1;
+        if (here.x < 0 || here.y < 0 || x2 >= 256 || y2 >= 256) {
+            return false;
+        }
+        return creepGrid[here.x][here.y] && creepGrid[x2][here.y] && creepGrid[here.x][y2] && creepGrid[x2][y2];
+    }
+
+    // A Block only becomes possible once all its corners have creep, so only Blocks with a corner on a changed tile are tried
+    private static void addCreepBlocks(TilePosition changed) {
+        for (int k = 0; k < creepBlockSizes.size(); k++) {
+            int i = creepBlockSizes.get(k).x;
+            int j = creepBlockSizes.get(k).y;
+            TilePosition[] corners = {
+                    changed,
+                    new TilePosition(changed.x - i + 1, changed.y),
+                    new TilePosition(changed.x, changed.y - j + 1),
+                    new TilePosition(changed.x - i + 1, changed.y - j + 1)};
+            for (TilePosition tile : corners) {
+                addCreepBlock(tile, k);
+            }
+        }
+    }
+
+    // Adds a creep Block of the k-th size if it has creep on its corners and passes the same checks as Area Blocks
+    private static void addCreepBlock(TilePosition tile, int k) {
+        int i = creepBlockSizes.get(k).x;
+        int j = creepBlockSizes.get(k).y;
+        List<Piece> pieces = creepBlockPieces.get(k);
+        if (!tile.isValid(JBWEB.game) || !knownCreepOnCorners(tile, i, j)) {
+            return;
+        }
+
+        Area area = JBWEB.mapBWEM.getMap().getArea(tile);
+        if (area == null || JBWEB.tilesWithinArea(area, tile, i, j) != i * j
+                || exceedsMainCaps(tile, countPieces(pieces, Piece.Small), countPieces(pieces, Piece.Medium), countPieces(pieces, Piece.Large))
+                || !canAddLateBlock(tile, i, j)) {
+            return;
+        }
+        creepBlocks.add(insertBlock(tile, pieces));
+        countMainPieces(tile, pieces, 1);
+    }
+
+    // Creep Blocks need creep on all their corners, drop any covering a tile that lost it
+    private static void removeCreepBlocks(TilePosition lost) {
+        List<Block> receded = new ArrayList<>();
+        for (Block block : creepBlocks) {
+            TilePosition tile = block.getTilePosition();
+            if (lost.x >= tile.x && lost.y >= tile.y && lost.x < tile.x + block.width() && lost.y < tile.y + block.height()
+                    && !knownCreepOnCorners(tile, block.width(), block.height())) {
+                receded.add(block);
+            }
+        }
+        for (Block block : receded) {
+            removeBlock(block);
+            JBWEB.removeReserve(block.getTilePosition(), block.width(), block.height());
+            countMainPieces(block.getTilePosition(), block.getPieces(), -1);
+        }
+    }
+
+    private static void setCreep(int x, int y) {
+        creepGrid[x][y] = true;
+        addFrontier(x - 1, y);
+        addFrontier(x + 1, y);
+        addFrontier(x, y - 1);
+        addFrontier(x, y + 1);
+        addCreepBlocks(new TilePosition(x, y));
+    }
+
+    // Samples each tile on the edge of known creep at most once, creep can only spread from here or from new creep producing buildings.
+    // Tiles not sampled before the deadline are at the front of the queue for the next frame.
+    private static void sampleCreepFrontier(long deadline) {
+        int frontierSize = creepFrontier.size();
+        for (int k = 0; k < frontierSize; k++) {
+            if ((k & 63) == 63 && System.nanoTime() > deadline) {
+                return;
+            }
+            TilePosition tile = creepFrontier.poll();
+            if (JBWEB.game.hasCreep(tile)) {
+                frontierGrid[tile.x][tile.y] = false;
+                setCreep(tile.x, tile.y);
+            } else {
+                creepFrontier.add(tile);
+            }
+        }
+    }
+
     private static void searchStart(Position start) {
         TilePosition tileStart = new TilePosition(start);
         TilePosition tileBest = TilePosition.Invalid;
@@ -342,16 +603,7 @@ public class Blocks {
                 }
 
                 if (tileBest.isValid(JBWEB.game) && canAddBlock(tileBest, i, j)) {
-                    if (JBWEB.mapBWEM.getMap().getArea(tileBest) == JBWEB.getMainArea()) {
-                        for (Piece piece : piecesBest) {
-                            if (mainPieces.get(piece) == null) {
-                                mainPieces.put(piece, 1);
-                            } else {
-                                int tmp = mainPieces.get(piece) + 1;
-                                mainPieces.put(piece, tmp);
-                            }
-                        }
-                    }
+                    countMainPieces(tileBest, piecesBest, 1);
                     insertBlock(tileBest, piecesBest);
                 }
             }
@@ -435,48 +687,13 @@ public class Blocks {
                 for (Double key : tilesByPathDist.keySet()) {
                     TilePosition tile = tilesByPathDist.get(key);
 
-                    // Protoss caps large pieces in the main at 12 if we don't have necessary medium pieces
-                    if (JBWEB.game.self().getRace() == Race.Protoss) {
-                        if (mainPieces.get(Piece.Large) != null && mainPieces.get(Piece.Medium) != null) {
-                            if (largeCount > 0 && JBWEB.mapBWEM.getMap().getArea(tile) == JBWEB.getMainArea() &&
-                                    mainPieces.get(Piece.Large) >= 12 && mainPieces.get(Piece.Medium) < 10) {
-                                continue;
-                            }
-                        }
-                    }
-
-                    // Zerg only need 4 medium pieces and 2 small piece
-                    if (JBWEB.game.self().getRace() == Race.Zerg) {
-                        if (mainPieces.get(Piece.Medium) != null && mainPieces.get(Piece.Small) != null) {
-                            if ((mediumCount > 0 && mainPieces.get(Piece.Medium) >= 4) ||
-                                    (smallCount > 0 && mainPieces.get(Piece.Small) >= 2)) {
-                                continue;
-                            }
-                        }
-                    }
-
-                    // Terran only need about 20 depot spots
-                    if (JBWEB.game.self().getRace() == Race.Terran) {
-                        if (mainPieces.get(Piece.Medium) != null) {
-                            if (mediumCount > 0 && mainPieces.get(Piece.Medium) >= 20) {
-                                continue;
-                            }
-                        }
+                    if (exceedsMainCaps(tile, smallCount, mediumCount, largeCount)) {
+                        continue;
                     }
 
                     if (canAddBlock(tile, i, j)) {
                         insertBlock(tile, pieces);
-
-                        if (JBWEB.mapBWEM.getMap().getArea(tile) == JBWEB.getMainArea()) {
-                            for (Piece piece : pieces) {
-                                if (mainPieces.get(piece) == null) {
-                                    mainPieces.put(piece, 1);
-                                } else {
-                                    int tmp = mainPieces.get(piece) + 1;
-                                    mainPieces.put(piece, tmp);
-                                }
-                            }
-                        }
+                        countMainPieces(tile, pieces, 1);
                     }
                 }
             }
@@ -592,27 +809,223 @@ public class Blocks {
 
     /// Erases any blocks at the specified TilePosition.
     /// <param name="here"> The TilePosition that you want to delete any BWEB::Block that exists here.
-    public void eraseBlock(TilePosition here) {
-        List<Block> blocksToRemove = new ArrayList<>();
+    public static void eraseBlock(TilePosition here) {
+        if (!here.isValid(JBWEB.game)) {
+            return;
+        }
+
+        // Blocks may overlap, keep erasing until no Block owns this tile
+        while (blockGrid[here.x][here.y] != null) {
+            removeBlock(blockGrid[here.x][here.y]);
+        }
+    }
+
+    private static void removeBlock(Block block) {
+        TilePosition tile = block.getTilePosition();
+        allBlocks.remove(block);
+        creepBlocks.remove(block);
+        blockIndex.remove(blockCenter(block), block);
+        PlacementIndex.removeBlock(block);
+        stampBlock(block, null);
+
+        // Give any tiles back to other Blocks that overlapped this one
+        TilePosition searchStart = new TilePosition(tile.x - maxBlockWidth, tile.y - maxBlockHeight);
+        for (Block other : blockIndex.query(searchStart, block.width() + maxBlockWidth * 2, block.height() + maxBlockHeight * 2)) {
+            TilePosition otherTile = other.getTilePosition();
+            if (otherTile.x < tile.x + block.width() && otherTile.x + other.width() > tile.x
+                    && otherTile.y < tile.y + block.height() && otherTile.y + other.height() > tile.y) {
+                stampBlock(other, other);
+            }
+        }
+    }
+
+    /// Improves the packing of BWEB::Blocks within a BWEM::Area using simulated annealing for up to the given amount of milliseconds.
+    /// Only production Blocks with no used placements are moved. Every Block keeps a one tile walking lane around it.
+    /// New Protoss Blocks are only added from templates whose 2x2 (small) pieces can power every other piece.
+    /// Returns how many building placements were gained, the layout is only replaced if it improved.
+    /// <param name="area"> The BWEM::Area to optimize.
+    /// <param name="timeLimit"> The time budget in milliseconds.
+    public static int optimizeBlocks(Area area, double timeLimit) {
+        if (area == null) {
+            return 0;
+        }
+
+        // Gather the Blocks we are allowed to move
+        List<Block> blocks = new ArrayList<>();
         for (Block block : allBlocks) {
-            if (here.x >= block.getTilePosition().x && here.x < block.getTilePosition().x + block.width() &&
-                    here.y >= block.getTilePosition().y && here.y < block.getTilePosition().y + block.height()) {
-                blocksToRemove.add(block);
+            if (block.isProxy() || block.isDefensive() || JBWEB.mapBWEM.getMap().getArea(block.getTilePosition()) != area
+                    || JBWEB.tilesWithinArea(area, block.getTilePosition(), block.width(), block.height()) != block.width() * block.height()
+                    || JBWEB.isUsed(block.getTilePosition(), block.width(), block.height()) != UnitType.None) {
+                continue;
             }
+            blocks.add(block);
         }
-        for (Block block : blocksToRemove) {
-            allBlocks.remove(block);
+
+        // Gather every Block template for this race, new Blocks are added with these
+        List<TilePosition> sizes = new ArrayList<>();
+        List<List<Piece>> pieces = new ArrayList<>();
+        for (int i = 20; i > 0; i--) {
+            for (int j = 20; j > 0; j--) {
+                List<Piece> p = whichPieces(i, j, false, false);
+                if (!p.isEmpty() && (JBWEB.game.self().getRace() != Race.Protoss || isSelfPowered(p))) {
+                    sizes.add(new TilePosition(i, j));
+                    pieces.add(p);
+                }
+            }
         }
+
+        BlockOptimizer optimizer = new BlockOptimizer(area, blocks, sizes, pieces, mainPieces);
+        int gained = optimizer.optimize(timeLimit);
+        if (gained <= 0) {
+            return 0;
+        }
+
+        // Replace the Blocks that moved or were dropped, Blocks left in place are kept as they are
+        HashSet<Block> unmoved = new HashSet<>();
+        for (BlockOptimizer.Placement placement : optimizer.getBest()) {
+            if (placement.isUnmoved()) {
+                unmoved.add(placement.getBlock());
+            }
+        }
+        for (Block block : optimizer.getMovable()) {
+            if (!unmoved.contains(block)) {
+                removeBlock(block);
+                JBWEB.removeReserve(block.getTilePosition(), block.width(), block.height());
+                countMainPieces(block.getTilePosition(), block.getPieces(), -1);
+            }
+        }
+        for (BlockOptimizer.Placement placement : optimizer.getBest()) {
+            if (!placement.isUnmoved()) {
+                TilePosition tile = new TilePosition(placement.x, placement.y);
+                insertBlock(tile, placement.getPieces());
+                countMainPieces(tile, placement.getPieces(), 1);
+            }
+        }
+        return gained;
     }
 
     /// Initializes the building of every BWEB::Block on the map, call it only once per game.
     public static void findBlocks() {
+        searchedAreas.add(JBWEB.getMainArea());
         findMainDefenseBlock();
         findMainStartBlocks();
         findProxyBlock();
         findProductionBlocks();
     }
 
+    /// Queues the building of BWEB::Blocks within a BWEM::Area, such as a newly taken expansion.
+    /// Generation runs in Blocks::onFrame until the Area is fully searched. Each Area is only searched once.
+    /// <param name="area"> The BWEM::Area to place Blocks in.
+    public static void findBlocks(Area area) {
+        if (area == null || !searchedAreas.add(area)) {
+            return;
+        }
+        areaSearches.add(new AreaSearch(area));
+    }
+
+    /// Samples creep spread if creep planning is enabled and continues any queued BWEB::Block generation, together for up to the Area time limit.
+    /// Returns true if no Area generation is left queued.
+    public static boolean onFrame() {
+        long deadline = System.nanoTime() + (long) (areaTimeLimit * 1000000.0);
+        if (creepPlanning) {
+            sampleCreepFrontier(deadline);
+        }
+
+        while (!areaSearches.isEmpty()) {
+            if (!areaSearches.get(0).run(deadline)) {
+                return false;
+            }
+            areaSearches.remove(0);
+        }
+        return true;
+    }
+
+    /// Enables or disables incremental Zerg Block planning. When enabled, the edge of known creep is sampled every frame in Blocks::onFrame
+    /// and BWEB::Blocks are added wherever newly spread creep makes them possible.
+    public static void setCreepPlanning(boolean enabled) {
+        if (enabled && !creepPlanning) {
+            // Largest Block sizes are tried first
+            creepBlockSizes.clear();
+            creepBlockPieces.clear();
+            for (int i = 10; i > 0; i--) {
+                for (int j = 10; j > 0; j--) {
+                    List<Piece> pieces = whichPieces(i, j, false, false);
+                    if (!pieces.isEmpty() && countPieces(pieces, Piece.Medium) >= 1) {
+                        creepBlockSizes.add(new TilePosition(i, j));
+                        creepBlockPieces.add(pieces);
+                    }
+                }
+            }
+
+            creepFrontier.clear();
+            for (int x = 0; x < JBWEB.game.mapWidth(); x++) {
+                for (int y = 0; y < JBWEB.game.mapHeight(); y++) {
+                    creepGrid[x][y] = JBWEB.game.hasCreep(new TilePosition(x, y));
+                    frontierGrid[x][y] = false;
+                }
+            }
+            for (int x = 0; x < JBWEB.game.mapWidth(); x++) {
+                for (int y = 0; y < JBWEB.game.mapHeight(); y++) {
+                    if (creepGrid[x][y]) {
+                        addFrontier(x - 1, y);
+                        addFrontier(x + 1, y);
+                        addFrontier(x, y - 1);
+                        addFrontier(x, y + 1);
+                    }
+                }
+            }
+
+            // Add the Blocks creep that already exists makes possible, such as around the starting Hatchery
+            for (int x = 0; x < JBWEB.game.mapWidth(); x++) {
+                for (int y = 0; y < JBWEB.game.mapHeight(); y++) {
+                    if (!creepGrid[x][y]) {
+                        continue;
+                    }
+                    TilePosition tile = new TilePosition(x, y);
+                    for (int k = 0; k < creepBlockSizes.size(); k++) {
+                        addCreepBlock(tile, k);
+                    }
+                }
+            }
+        }
+        creepPlanning = enabled;
+    }
+
+    /// Reports a TilePosition that the bot has seen gain or lose creep when creep planning is enabled.
+    /// Gaining creep adds any BWEB::Blocks it makes possible, losing it removes the creep Blocks that needed it.
+    public static void onCreepChange(TilePosition here) {
+        if (!creepPlanning || !here.isValid(JBWEB.game) || creepGrid[here.x][here.y] == JBWEB.game.hasCreep(here)) {
+            return;
+        }
+
+        // Creep receded, such as after a Hatchery or Creep Colony died, it may spread back here later
+        if (creepGrid[here.x][here.y]) {
+            creepGrid[here.x][here.y] = false;
+            removeCreepBlocks(here);
+            addFrontier(here.x, here.y);
+            return;
+        }
+        frontierGrid[here.x][here.y] = false;
+        setCreep(here.x, here.y);
+    }
+
+    /// Adds the edge of a new creep producing building to the creep frontier when creep planning is enabled.
+    static void onCreepSource(TilePosition here, UnitType type) {
+        if (!creepPlanning) {
+            return;
+        }
+        for (int x = here.x - 1; x <= here.x + type.tileWidth(); x++) {
+            for (int y = here.y - 1; y <= here.y + type.tileHeight(); y++) {
+                addFrontier(x, y);
+            }
+        }
+    }
+
+    /// Sets how many milliseconds per frame creep sampling and queued Area Block generation may use. Default is 1.0.
+    public static void setAreaTimeLimit(double timeLimit) {
+        areaTimeLimit = timeLimit;
+    }
+
     /// Calls the draw function for each Block that exists.
     public static void draw() {
         for (Block block : allBlocks) {
@@ -625,19 +1038,16 @@ public class Blocks {
         return allBlocks;
     }
 
-    /// Returns the closest BWEB::Block to the given TilePosition.
-    public Block getClosestBlock(TilePosition here) {
-        double distBest = Double.MAX_VALUE;
-        Block bestBlock = null;
-        for (Block block : allBlocks) {
-            TilePosition tile = new TilePosition(block.getTilePosition().x + block.width()/2, block.getTilePosition().y + block.height()/2);
-            double dist = here.getDistance(tile);
-
-            if (dist < distBest) {
-                distBest = dist;
-                bestBlock = block;
-            }
+    /// Returns the BWEB::Block that owns the given TilePosition, or null if no Block exists here.
+    public static Block getBlock(TilePosition here) {
+        if (!here.isValid(JBWEB.game)) {
+            return null;
         }
-        return bestBlock;
+        return blockGrid[here.x][here.y];
+    }
+
+    /// Returns the closest BWEB::Block to the given TilePosition.
+    public static Block getClosestBlock(TilePosition here) {
+        return blockIndex.getClosest(here);
     }
 }
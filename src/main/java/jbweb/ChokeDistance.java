@@ -0,0 +1,119 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChokeDistance {
+    // How many tiles around the choke geometry the lookup covers, enough for the wall search and defense placement
+    private static final int padding = 20;
+
+    private final int[] siteX, siteY;
+    private final int originX, originY, width, height;
+    private final int[][] candidates;
+
+    /// Precomputes, for every BWAPI::TilePosition around a choke, which choke tiles can be closest to a BWAPI::Position inside it.
+    /// <param name="tiles"> The deduplicated BWAPI::TilePositions that make up the geometry of the choke.
+    ChokeDistance(List<TilePosition> tiles) {
+        siteX = new int[tiles.size()];
+        siteY = new int[tiles.size()];
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < tiles.size(); i++) {
+            TilePosition tile = tiles.get(i);
+            siteX[i] = tile.x * 32 + 16;
+            siteY[i] = tile.y * 32 + 16;
+            minX = Math.min(minX, tile.x);
+            minY = Math.min(minY, tile.y);
+            maxX = Math.max(maxX, tile.x);
+            maxY = Math.max(maxY, tile.y);
+        }
+
+        if (tiles.isEmpty()) {
+            originX = originY = width = height = 0;
+            candidates = new int[0][];
+            return;
+        }
+
+        originX = Math.max(0, minX - padding);
+        originY = Math.max(0, minY - padding);
+        width = Math.min(256, maxX + padding + 1) - originX;
+        height = Math.min(256, maxY + padding + 1) - originY;
+        candidates = new int[width * height][];
+
+        // A choke tile can only be the closest to some pixel in a tile if its nearest pixel is no further than the furthest pixel of the best choke tile
+        List<Integer> list = new ArrayList<>();
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int left = (originX + x) * 32, top = (originY + y) * 32;
+                long bound = Long.MAX_VALUE;
+                for (int i = 0; i < siteX.length; i++) {
+                    bound = Math.min(bound, farthest(siteX[i], siteY[i], left, top));
+                }
+
+                list.clear();
+                for (int i = 0; i < siteX.length; i++) {
+                    if (nearest(siteX[i], siteY[i], left, top) <= bound) {
+                        list.add(i);
+                    }
+                }
+                int[] cell = new int[list.size()];
+                for (int j = 0; j < cell.length; j++) {
+                    cell[j] = list.get(j);
+                }
+                candidates[x * height + y] = cell;
+            }
+        }
+    }
+
+    // Squared distance from a point to the closest pixel of a tile
+    private static long nearest(int px, int py, int left, int top) {
+        long dx = Math.max(0, Math.max(left - px, px - (left + 31)));
+        long dy = Math.max(0, Math.max(top - py, py - (top + 31)));
+        return dx * dx + dy * dy;
+    }
+
+    // Squared distance from a point to the furthest pixel of a tile
+    private static long farthest(int px, int py, int left, int top) {
+        long dx = Math.max(Math.abs(px - left), Math.abs(px - (left + 31)));
+        long dy = Math.max(Math.abs(py - top), Math.abs(py - (top + 31)));
+        return dx * dx + dy * dy;
+    }
+
+    // Returns the index of the closest choke tile among the given ones, the first one wins a tie
+    private int closest(int[] sites, boolean all, Position here) {
+        int best = -1;
+        double distBest = Double.MAX_VALUE;
+        int count = all ? siteX.length : sites.length;
+        for (int j = 0; j < count; j++) {
+            int i = all ? j : sites[j];
+            double dist = new Position(siteX[i], siteY[i]).getDistance(here);
+            if (dist < distBest) {
+                distBest = dist;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private int closest(Position here) {
+        int x = Math.floorDiv(here.x, 32) - originX;
+        int y = Math.floorDiv(here.y, 32) - originY;
+        if (x < 0 || y < 0 || x >= width || y >= height) {
+            return closest(null, true, here);
+        }
+        return closest(candidates[x * height + y], false, here);
+    }
+
+    /// Returns the center BWAPI::Position of the choke tile closest to a BWAPI::Position, or BWAPI::Positions::Invalid if the choke has no tiles.
+    Position getClosestTile(Position here) {
+        int i = closest(here);
+        return i < 0 ? Position.Invalid : new Position(siteX[i], siteY[i]);
+    }
+
+    /// Returns the distance from a BWAPI::Position to the closest choke tile, or DBL_MAX if the choke has no tiles.
+    double getDistance(Position here) {
+        int i = closest(here);
+        return i < 0 ? Double.MAX_VALUE : new Position(siteX[i], siteY[i]).getDistance(here);
+    }
+}
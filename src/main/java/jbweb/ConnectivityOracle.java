@@ -0,0 +1,280 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ConnectivityOracle {
+    // Terrain shared by every copy, walkability is only ever removed by wall pieces inside the window
+    private final int originX, originY, size, nodes;
+    private final boolean[] open;
+    private final int[] borderLabels;
+    private final int[][] labelTiles;
+    private final int[] outsideLabel;
+
+    // State of a single search
+    private final int[] blocked;
+    private final int[] visited;
+    private final int[] queue;
+    private int stamp = 0;
+    private int overflow = 0;
+    private int pieces = 0;
+    private long stateHash = 0;
+    private long cachedHash = -1;
+    private int cachedSource = -1, cachedTarget = -1;
+    private int sealedPieces = -1, sealedSource = -1, sealedTarget = -1;
+
+    /// Captures the walkability of a window of BWAPI::TilePositions around a Wall, and which window tiles connect through the rest of the map.
+    ConnectivityOracle(Wall wall, TilePosition center, int radius) {
+        originX = center.x - radius;
+        originY = center.y - radius;
+        size = radius * 2 + 1;
+
+        open = new boolean[size * size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                open[x * size + y] = wall.wallWalkable(new TilePosition(originX + x, originY + y));
+            }
+        }
+
+        // Flood the walkable terrain outside of the window from each tile bordering it, every flood is one label
+        int width = JBWEB.game.mapWidth();
+        int height = JBWEB.game.mapHeight();
+        outsideLabel = new int[256 * 256];
+        Arrays.fill(outsideLabel, -1);
+        borderLabels = new int[size * size * 2];
+        Arrays.fill(borderLabels, -1);
+        List<List<Integer>> labels = new ArrayList<>();
+        int[] flood = new int[256 * 256];
+        boolean[] checked = new boolean[256 * 256];
+        for (int i = 0; i < size * size; i++) {
+            int wx = originX + i / size;
+            int wy = originY + i % size;
+            for (int d = 0; d < 4; d++) {
+                int x = wx + dx[d], y = wy + dy[d];
+                if (inWindow(x, y) || x < 0 || y < 0 || x >= width || y >= height) {
+                    continue;
+                }
+
+                if (!checked[x * 256 + y]) {
+                    checked[x * 256 + y] = true;
+                    if (wall.wallWalkable(new TilePosition(x, y))) {
+                        int label = labels.size();
+                        labels.add(new ArrayList<>());
+                        int head = 0, tail = 0;
+                        flood[tail++] = x * 256 + y;
+                        outsideLabel[x * 256 + y] = label;
+                        while (head < tail) {
+                            int t = flood[head++];
+                            for (int e = 0; e < 4; e++) {
+                                int nx = t / 256 + dx[e], ny = t % 256 + dy[e];
+                                if (inWindow(nx, ny) || nx < 0 || ny < 0 || nx >= width || ny >= height || checked[nx * 256 + ny]) {
+                                    continue;
+                                }
+                                checked[nx * 256 + ny] = true;
+                                if (wall.wallWalkable(new TilePosition(nx, ny))) {
+                                    outsideLabel[nx * 256 + ny] = label;
+                                    flood[tail++] = nx * 256 + ny;
+                                }
+                            }
+                        }
+                    }
+                }
+
+                int label = outsideLabel[x * 256 + y];
+                if (label >= 0 && borderLabels[i * 2] != label && borderLabels[i * 2 + 1] != label) {
+                    borderLabels[borderLabels[i * 2] < 0 ? i * 2 : i * 2 + 1] = label;
+                    labels.get(label).add(i);
+                }
+            }
+        }
+
+        labelTiles = new int[labels.size()][];
+        for (int l = 0; l < labels.size(); l++) {
+            labelTiles[l] = new int[labels.get(l).size()];
+            for (int j = 0; j < labels.get(l).size(); j++) {
+                labelTiles[l][j] = labels.get(l).get(j);
+            }
+        }
+
+        nodes = size * size + labelTiles.length;
+        blocked = new int[size * size];
+        visited = new int[nodes];
+        queue = new int[nodes];
+    }
+
+    // Creates an empty search state over the same terrain
+    private ConnectivityOracle(ConnectivityOracle base) {
+        originX = base.originX;
+        originY = base.originY;
+        size = base.size;
+        nodes = base.nodes;
+        open = base.open;
+        borderLabels = base.borderLabels;
+        labelTiles = base.labelTiles;
+        outsideLabel = base.outsideLabel;
+        blocked = new int[size * size];
+        visited = new int[nodes];
+        queue = new int[nodes];
+    }
+
+    private static final int[] dx = {0, 1, -1, 0};
+    private static final int[] dy = {1, 0, 0, -1};
+
+    /// Returns a copy with its own search state, for searching on another thread.
+    ConnectivityOracle copy() {
+        return new ConnectivityOracle(this);
+    }
+
+    private boolean inWindow(int x, int y) {
+        return x >= originX && y >= originY && x < originX + size && y < originY + size;
+    }
+
+    // Returns the node of a tile, or -1 if the tile is outside the window and doesn't connect to it
+    private int node(TilePosition here) {
+        if (inWindow(here.x, here.y)) {
+            return (here.x - originX) * size + (here.y - originY);
+        }
+        return outsideNode(here.x, here.y);
+    }
+
+    private boolean isOpen(int node) {
+        return node >= size * size || (open[node] && blocked[node] == 0);
+    }
+
+    private void stampPiece(TilePosition here, int width, int height, int change) {
+        pieces += change;
+        stateHash ^= ((here.x * 256L + here.y) * 31 + width * 7 + height) * 0x9E3779B97F4A7C15L;
+        for (int x = here.x; x < here.x + width; x++) {
+            for (int y = here.y; y < here.y + height; y++) {
+                if (inWindow(x, y)) {
+                    blocked[(x - originX) * size + (y - originY)] += change;
+                } else {
+                    overflow += change;
+                }
+            }
+        }
+    }
+
+    /// Marks a section of BWAPI::TilePositions as blocked by a wall piece.
+    void place(TilePosition here, int width, int height) {
+        stampPiece(here, width, height, 1);
+    }
+
+    /// Removes a wall piece, in the reverse order of placing them.
+    void remove(TilePosition here, int width, int height) {
+        stampPiece(here, width, height, -1);
+        if (pieces < sealedPieces) {
+            sealedPieces = -1;
+        }
+    }
+
+    /// Returns true if the oracle can answer connectivity between these BWAPI::TilePositions for the current pieces.
+    boolean covers(TilePosition source, TilePosition target) {
+        return overflow == 0 && node(source) >= 0 && node(target) >= 0;
+    }
+
+    // Floods from the source the same way Path::bfsPath does, the source itself doesn't need to be walkable
+    private void flood(int source, int target) {
+        if (cachedHash == stateHash && cachedSource == source && cachedTarget == target) {
+            return;
+        }
+        cachedHash = stateHash;
+        cachedSource = source;
+        cachedTarget = target;
+        stamp++;
+
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        visited[source] = stamp;
+        while (head < tail) {
+            int n = queue[head++];
+            if (n >= size * size) {
+                for (int t : labelTiles[n - size * size]) {
+                    if (visited[t] != stamp && isOpen(t)) {
+                        visited[t] = stamp;
+                        queue[tail++] = t;
+                    }
+                }
+                continue;
+            }
+
+            int x = n / size, y = n % size;
+            for (int d = 0; d < 4; d++) {
+                int nx = x + dx[d], ny = y + dy[d];
+                int next;
+                if (nx >= 0 && ny >= 0 && nx < size && ny < size) {
+                    next = nx * size + ny;
+                    if (!isOpen(next)) {
+                        continue;
+                    }
+                } else {
+                    next = outsideNode(originX + nx, originY + ny);
+                    if (next < 0) {
+                        continue;
+                    }
+                }
+                if (visited[next] != stamp) {
+                    visited[next] = stamp;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    // Returns the label node of a tile just outside the window
+    private int outsideNode(int x, int y) {
+        if (x < 0 || y < 0 || x >= 256 || y >= 256 || outsideLabel[x * 256 + y] < 0) {
+            return -1;
+        }
+        return size * size + outsideLabel[x * 256 + y];
+    }
+
+    /// Returns true if a path exists from the source to the target, matching the result of Path::bfsPath.
+    boolean isConnected(TilePosition source, TilePosition target) {
+        if (source.equals(target) || source.equals(new TilePosition(0, 0)) || target.equals(new TilePosition(0, 0))) {
+            return false;
+        }
+
+        int s = node(source), t = node(target);
+        if (!isOpen(t)) {
+            return false;
+        }
+
+        // Pieces only ever remove walkable tiles, once sealed it stays sealed until a piece is removed
+        if (sealedPieces >= 0 && sealedSource == s && sealedTarget == t) {
+            return false;
+        }
+
+        flood(s, t);
+        if (visited[t] == stamp) {
+            return true;
+        }
+        sealedPieces = pieces;
+        sealedSource = s;
+        sealedTarget = t;
+        return false;
+    }
+
+    /// Returns true if placing a piece here can't disconnect the source from the target, because it doesn't block anything the source reaches.
+    boolean cannotSeal(TilePosition source, TilePosition target, TilePosition here, int width, int height) {
+        if (!covers(source, target) || !isConnected(source, target)) {
+            return false;
+        }
+        if (!inWindow(here.x, here.y) || !inWindow(here.x + width - 1, here.y + height - 1)) {
+            return false;
+        }
+
+        flood(node(source), node(target));
+        for (int x = here.x; x < here.x + width; x++) {
+            for (int y = here.y; y < here.y + height; y++) {
+                if (visited[(x - originX) * size + (y - originY)] == stamp) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
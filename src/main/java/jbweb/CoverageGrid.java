@@ -0,0 +1,104 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class CoverageGrid {
+    private static final int GROUND = 0;
+    private static final int AIR = 1;
+
+    private static int coverageGrid[][][] = new int[2][256][256];
+    private static Map<Integer, Defense> defenses = new HashMap<>();
+
+    // The footprint and UnitType a defense was stamped with
+    private static class Defense {
+        final TilePosition tile;
+        final UnitType type;
+
+        Defense(TilePosition _tile, UnitType _type) {
+            tile = _tile;
+            type = _type;
+        }
+    }
+
+    /// Forgets every defense, called when JBWEB starts.
+    static void reset() {
+        coverageGrid = new int[2][256][256];
+        defenses.clear();
+    }
+
+    // Returns the range in pixels a defense covers, or -1 if it doesn't attack that layer
+    private static int range(UnitType type, int layer) {
+        // Bunkers shoot with the Marines inside them, which gain a tile of range
+        if (type == UnitType.Terran_Bunker) {
+            return UnitType.Terran_Marine.groundWeapon().maxRange() + 32;
+        }
+        WeaponType weapon = layer == GROUND ? type.groundWeapon() : type.airWeapon();
+        return weapon == null || weapon == WeaponType.None ? -1 : weapon.maxRange();
+    }
+
+    // Stamps the range of a defense onto every TilePosition whose center it reaches from the edges of its footprint
+    private static void stamp(Defense defense, int change) {
+        int left = defense.tile.x * 32;
+        int top = defense.tile.y * 32;
+        int right = left + defense.type.tileWidth() * 32 - 1;
+        int bottom = top + defense.type.tileHeight() * 32 - 1;
+
+        for (int layer = GROUND; layer <= AIR; layer++) {
+            int range = range(defense.type, layer);
+            if (range < 0) {
+                continue;
+            }
+
+            int reach = range / 32 + 1;
+            for (int x = Math.max(0, defense.tile.x - reach); x < Math.min(256, defense.tile.x + defense.type.tileWidth() + reach); x++) {
+                for (int y = Math.max(0, defense.tile.y - reach); y < Math.min(256, defense.tile.y + defense.type.tileHeight() + reach); y++) {
+                    int cx = x * 32 + 16, cy = y * 32 + 16;
+                    int dx = Math.max(0, Math.max(left - cx, cx - right));
+                    int dy = Math.max(0, Math.max(top - cy, cy - bottom));
+                    if (dx * dx + dy * dy <= range * range) {
+                        coverageGrid[layer][x][y] += change;
+                    }
+                }
+            }
+        }
+    }
+
+    /// Returns true if the BWAPI::UnitType is a static defense that adds coverage.
+    static boolean isDefense(UnitType type) {
+        return type.isBuilding() && (type == UnitType.Terran_Bunker || range(type, GROUND) >= 0 || range(type, AIR) >= 0);
+    }
+
+    /// Adds the coverage of one of our static defenses, replacing what it covered before if it morphed.
+    static void addDefense(Unit unit) {
+        Defense previous = defenses.remove(unit.getID());
+        if (previous != null) {
+            stamp(previous, -1);
+        }
+        if (isDefense(unit.getType())) {
+            Defense defense = new Defense(unit.getTilePosition(), unit.getType());
+            defenses.put(unit.getID(), defense);
+            stamp(defense, 1);
+        }
+    }
+
+    /// Removes the coverage of one of our static defenses.
+    static void removeDefense(Unit unit) {
+        Defense previous = defenses.remove(unit.getID());
+        if (previous != null) {
+            stamp(previous, -1);
+        }
+    }
+
+    /// Returns how many of our static defenses can shoot ground units at a BWAPI::TilePosition.
+    static int getGroundCoverage(TilePosition here) {
+        return here.x >= 0 && here.y >= 0 && here.x < 256 && here.y < 256 ? coverageGrid[GROUND][here.x][here.y] : 0;
+    }
+
+    /// Returns how many of our static defenses can shoot air units at a BWAPI::TilePosition.
+    static int getAirCoverage(TilePosition here) {
+        return here.x >= 0 && here.y >= 0 && here.x < 256 && here.y < 256 ? coverageGrid[AIR][here.x][here.y] : 0;
+    }
+}
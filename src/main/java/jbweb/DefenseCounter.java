@@ -0,0 +1,103 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DefenseCounter {
+    // Counters of every Station and Wall defense location at each TilePosition
+    private static List<DefenseCounter>[] slots = newSlots();
+
+    private int ground = 0;
+    private int air = 0;
+
+    @SuppressWarnings("unchecked")
+    private static List<DefenseCounter>[] newSlots() {
+        return new List[256 * 256];
+    }
+
+    /// Forgets every registered defense location, called when JBWEB starts.
+    static void reset() {
+        slots = newSlots();
+    }
+
+    private static boolean isGroundDefense(UnitType type) {
+        return type == UnitType.Protoss_Photon_Cannon
+                || type == UnitType.Zerg_Sunken_Colony
+                || type == UnitType.Terran_Bunker;
+    }
+
+    private static boolean isAirDefense(UnitType type) {
+        return type == UnitType.Protoss_Photon_Cannon
+                || type == UnitType.Zerg_Spore_Colony
+                || type == UnitType.Terran_Missile_Turret;
+    }
+
+    private void count(UnitType type, int change) {
+        if (isGroundDefense(type)) {
+            ground += change;
+        }
+        if (isAirDefense(type)) {
+            air += change;
+        }
+    }
+
+    /// Registers defense locations, counting the UnitTypes already in the used grid at them.
+    void addLocations(List<TilePosition> locations) {
+        for (TilePosition tile : locations) {
+            if (!tile.isValid(JBWEB.game)) {
+                continue;
+            }
+            int i = tile.x * 256 + tile.y;
+            if (slots[i] == null) {
+                slots[i] = new ArrayList<>();
+            }
+            slots[i].add(this);
+            count(JBWEB.isUsed(tile, 1, 1), 1);
+        }
+    }
+
+    /// Unregisters defense locations added with addLocations, uncounting the UnitTypes at them.
+    void removeLocations(List<TilePosition> locations) {
+        for (TilePosition tile : locations) {
+            if (!tile.isValid(JBWEB.game)) {
+                continue;
+            }
+            int i = tile.x * 256 + tile.y;
+            if (slots[i] != null && slots[i].remove(this)) {
+                count(JBWEB.isUsed(tile, 1, 1), -1);
+                if (slots[i].isEmpty()) {
+                    slots[i] = null;
+                }
+            }
+        }
+    }
+
+    /// Updates the counters of any defense locations in a section of BWAPI::TilePositions of the used grid.
+    /// Called with -1 before the section changes and with 1 after it changed.
+    static void update(TilePosition here, int width, int height, int change) {
+        for (int x = Math.max(0, here.x); x < Math.min(256, here.x + width); x++) {
+            for (int y = Math.max(0, here.y); y < Math.min(256, here.y + height); y++) {
+                List<DefenseCounter> counters = slots[x * 256 + y];
+                if (counters == null) {
+                    continue;
+                }
+                UnitType type = JBWEB.isUsed(new TilePosition(x, y), 1, 1);
+                for (DefenseCounter counter : counters) {
+                    counter.count(type, change);
+                }
+            }
+        }
+    }
+
+    /// Returns the number of ground defenses at the registered locations.
+    int getGround() {
+        return ground;
+    }
+
+    /// Returns the number of air defenses at the registered locations.
+    int getAir() {
+        return air;
+    }
+}
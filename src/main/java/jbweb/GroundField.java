@@ -0,0 +1,87 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+public class GroundField {
+    // Walking cost in pixels of a straight and a diagonal step between TilePositions
+    private static final int straight = 32;
+    private static final int diagonal = 45;
+    private static final int[] dx = {0, 1, -1, 0, 1, 1, -1, -1};
+    private static final int[] dy = {1, 0, 0, -1, 1, -1, 1, -1};
+
+    private final int[] distance = new int[256 * 256];
+    private final int[] source = new int[256 * 256];
+
+    /// Measures the walking distance from every fully walkable BWAPI::TilePosition to the closest of the sources, labelled by their index.
+    GroundField(List<TilePosition> sources) {
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(source, -1);
+        int width = JBWEB.game.mapWidth();
+        int height = JBWEB.game.mapHeight();
+
+        // Entries pack the distance above the tile, so the queue orders them by distance
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int i = 0; i < sources.size(); i++) {
+            TilePosition tile = sources.get(i);
+            if (!tile.isValid(JBWEB.game)) {
+                continue;
+            }
+            int u = tile.x * 256 + tile.y;
+            if (distance[u] != 0) {
+                distance[u] = 0;
+                source[u] = i;
+                queue.add((long) u);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            long entry = queue.poll();
+            int u = (int) (entry & 0xFFFF);
+            int d = (int) (entry >>> 16);
+            if (d > distance[u]) {
+                continue;
+            }
+
+            int x = u / 256, y = u % 256;
+            for (int i = 0; i < 8; i++) {
+                int nx = x + dx[i], ny = y + dy[i];
+                if (nx < 0 || ny < 0 || nx >= width || ny >= height || !JBWEB.walkGrid[nx][ny]) {
+                    continue;
+                }
+
+                // Don't cut corners of unwalkable tiles
+                if (i >= 4 && (!JBWEB.walkGrid[nx][y] || !JBWEB.walkGrid[x][ny])) {
+                    continue;
+                }
+
+                int v = nx * 256 + ny;
+                int next = d + (i >= 4 ? diagonal : straight);
+                if (next < distance[v]) {
+                    distance[v] = next;
+                    source[v] = source[u];
+                    queue.add(((long) next << 16) | v);
+                }
+            }
+        }
+    }
+
+    /// Returns the walking distance in pixels from a BWAPI::TilePosition to the closest source, or DBL_MAX if it can't be reached.
+    double getDistance(TilePosition here) {
+        if (!here.isValid(JBWEB.game) || distance[here.x * 256 + here.y] == Integer.MAX_VALUE) {
+            return Double.MAX_VALUE;
+        }
+        return distance[here.x * 256 + here.y];
+    }
+
+    /// Returns the index of the source closest to a BWAPI::TilePosition by walking, or -1 if none can be reached.
+    int getSource(TilePosition here) {
+        if (!here.isValid(JBWEB.game)) {
+            return -1;
+        }
+        return source[here.x * 256 + here.y];
+    }
+}
@@ -0,0 +1,199 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.Arrays;
+
+public class IncrementalPath {
+    // Lifelong Planning A* over 4-connected BWAPI::TilePositions, kept alive while wall pieces are placed and removed
+    private static final int INF = Integer.MAX_VALUE / 2;
+    private static final int KEY_INF = (1 << 20) - 1;
+    private static final int[] dx = {0, 1, -1, 0};
+    private static final int[] dy = {1, 0, 0, -1};
+
+    private final Wall wall;
+    private final int[] g = new int[256 * 256];
+    private final int[] rhs = new int[256 * 256];
+    private final int[] seen = new int[256 * 256];
+    private final byte[] open = new byte[256 * 256];
+    private int version = 0;
+    private int source = -1, target = -1;
+    private long[] heap = new long[1024];
+    private int heapSize = 0;
+    private final int mapWidth, mapHeight;
+
+    /// Creates an incremental search that uses the walkability of the given Wall.
+    IncrementalPath(Wall _wall) {
+        wall = _wall;
+        mapWidth = JBWEB.game.mapWidth();
+        mapHeight = JBWEB.game.mapHeight();
+    }
+
+    // Lazily resets a node the first time it's touched after the search was restarted
+    private void touch(int u) {
+        if (seen[u] != version) {
+            seen[u] = version;
+            g[u] = INF;
+            rhs[u] = INF;
+            open[u] = 0;
+        }
+    }
+
+    // 0 is unknown, 1 is walkable, 2 is not walkable
+    private boolean isOpen(int u) {
+        touch(u);
+        if (open[u] == 0) {
+            open[u] = wall.wallWalkable(new TilePosition(u >> 8, u & 255)) ? (byte) 1 : (byte) 2;
+        }
+        return open[u] == 1;
+    }
+
+    private int heuristic(int u) {
+        return Math.abs((u >> 8) - (target >> 8)) + Math.abs((u & 255) - (target & 255));
+    }
+
+    private long key(int u) {
+        int m = Math.min(KEY_INF, Math.min(g[u], rhs[u]));
+        return ((long) (m + heuristic(u)) << 40) | ((long) m << 16);
+    }
+
+    private void push(long entry) {
+        if (heapSize == heap.length) {
+            heap = Arrays.copyOf(heap, heapSize * 2);
+        }
+        int i = heapSize++;
+        while (i > 0 && heap[(i - 1) / 2] > entry) {
+            heap[i] = heap[(i - 1) / 2];
+            i = (i - 1) / 2;
+        }
+        heap[i] = entry;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long last = heap[--heapSize];
+        int i = 0;
+        while (i * 2 + 1 < heapSize) {
+            int c = i * 2 + 1;
+            if (c + 1 < heapSize && heap[c + 1] < heap[c]) {
+                c++;
+            }
+            if (heap[c] >= last) {
+                break;
+            }
+            heap[i] = heap[c];
+            i = c;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+    // Entries are never removed from the heap, an entry is stale once its node is consistent or its key changed
+    private boolean isStale(long entry) {
+        int u = (int) (entry & 0xFFFF);
+        return g[u] == rhs[u] || (entry & ~0xFFFFL) != key(u);
+    }
+
+    private void updateVertex(int u) {
+        touch(u);
+        if (u != source) {
+            int best = INF;
+            if (isOpen(u)) {
+                int x = u >> 8, y = u & 255;
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + dx[d], ny = y + dy[d];
+                    if (nx < 0 || ny < 0 || nx >= mapWidth || ny >= mapHeight) {
+                        continue;
+                    }
+                    int v = (nx << 8) | ny;
+                    touch(v);
+                    best = Math.min(best, g[v] + 1);
+                }
+            }
+            rhs[u] = Math.min(best, INF);
+        }
+        if (g[u] != rhs[u]) {
+            push(key(u) | u);
+        }
+    }
+
+    private void updateNeighbors(int u) {
+        int x = u >> 8, y = u & 255;
+        for (int d = 0; d < 4; d++) {
+            int nx = x + dx[d], ny = y + dy[d];
+            if (nx >= 0 && ny >= 0 && nx < mapWidth && ny < mapHeight) {
+                updateVertex((nx << 8) | ny);
+            }
+        }
+    }
+
+    private void computeShortestPath() {
+        while (true) {
+            while (heapSize > 0 && isStale(heap[0])) {
+                pop();
+            }
+            touch(target);
+            if ((heapSize == 0 || (heap[0] & ~0xFFFFL) >= key(target)) && rhs[target] == g[target]) {
+                return;
+            }
+            if (heapSize == 0) {
+                return;
+            }
+
+            int u = (int) (pop() & 0xFFFF);
+            if (g[u] > rhs[u]) {
+                g[u] = rhs[u];
+                updateNeighbors(u);
+            } else {
+                g[u] = INF;
+                updateVertex(u);
+                updateNeighbors(u);
+            }
+        }
+    }
+
+    // Restarts the search when the path points move, the walkability of an open wall depends on the path end
+    private void restart(int _source, int _target) {
+        source = _source;
+        target = _target;
+        version++;
+        heapSize = 0;
+        touch(source);
+        rhs[source] = 0;
+        push(key(source) | source);
+    }
+
+    /// Notifies the search that the walkability of a section of BWAPI::TilePositions changed.
+    void update(TilePosition here, int width, int height) {
+        if (source < 0) {
+            return;
+        }
+        for (int x = here.x; x < here.x + width; x++) {
+            for (int y = here.y; y < here.y + height; y++) {
+                if (x < 0 || y < 0 || x >= mapWidth || y >= mapHeight) {
+                    continue;
+                }
+                int u = (x << 8) | y;
+                touch(u);
+                open[u] = 0;
+                updateVertex(u);
+            }
+        }
+    }
+
+    /// Returns the length in tiles of the shortest path from the source to the target, or -1 if unreachable. Matches the reachability of Path::bfsPath.
+    int getDistance(TilePosition from, TilePosition to) {
+        if (from.equals(to) || from.equals(new TilePosition(0, 0)) || to.equals(new TilePosition(0, 0))
+                || !from.isValid(JBWEB.game) || !to.isValid(JBWEB.game)) {
+            return -1;
+        }
+
+        int s = (from.x << 8) | from.y;
+        int t = (to.x << 8) | to.y;
+        if (s != source || t != target) {
+            restart(s, t);
+        }
+        computeShortestPath();
+        return g[target] < INF ? g[target] : -1;
+    }
+}
@@ -7,7 +7,9 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class JBWEB {
     static Game game;
@@ -25,10 +27,18 @@ public class JBWEB {
 
     private static HashMap<Key, Boolean> lastKeyState = new HashMap<>();
     private static HashMap<ChokePoint, List<TilePosition>> chokeTiles = new HashMap<>();
+    private static HashMap<ChokePoint, ChokeDistance> chokeDistances = new HashMap<>();
     private static HashMap<ChokePoint, Pair<Position, Position>> chokeLines = new HashMap<>();
 
     private static int overlapGrid[][] = new int[256][256];
     private static UnitType usedGrid[][] = new UnitType[256][256];
+
+    // Bit per TilePosition mirrors of the grids above and of static terrain, so footprints are tested a row at a time
+    private static Bitboard reservedBits = new Bitboard(256, 256);
+    private static Bitboard usedBits = new Bitboard(256, 256);
+    private static Bitboard unplaceableBits = new Bitboard(256, 256);
+    private static Bitboard unbuildableBits = new Bitboard(256, 256);
+    private static Bitboard nonBuildableBits = new Bitboard(256, 256);
     static boolean walkGrid[][] = new boolean[256][256];
     private static final boolean logInfo = true;
 
@@ -361,11 +371,33 @@ public class JBWEB {
     public static void onStart(Game _game, BWEM _mapBWEM) {
         game = _game;
         mapBWEM = _mapBWEM;
+        reservedBits = new Bitboard(game.mapWidth(), game.mapHeight());
+        usedBits = new Bitboard(game.mapWidth(), game.mapHeight());
+        unplaceableBits = new Bitboard(game.mapWidth(), game.mapHeight());
+        unbuildableBits = new Bitboard(game.mapWidth(), game.mapHeight());
+        nonBuildableBits = new Bitboard(game.mapWidth(), game.mapHeight());
+        DefenseCounter.reset();
+        CoverageGrid.reset();
+        PowerGrid.reset();
+        PlacementIndex.reset();
+
         // Initializes usedGrid and walkGrid
         for (int x = 0; x < game.mapWidth(); x++) {
             for (int y = 0; y < game.mapHeight(); y++) {
                 usedGrid[x][y] = UnitType.None;
 
+                // Terrain that buildings or blocks can never be placed on
+                TilePosition tile = new TilePosition(x, y);
+                if (!game.isBuildable(tile)) {
+                    nonBuildableBits.set(x, y);
+                }
+                if (!game.isBuildable(tile) || !game.isWalkable(tile.toWalkPosition())) {
+                    unplaceableBits.set(x, y);
+                }
+                if (!mapBWEM.getMap().getTile(tile).isBuildable()) {
+                    unbuildableBits.set(x, y);
+                }
+
                 int cnt = 0;
                 for (int dx = x * 4; dx < (x * 4) + 4; dx++) {
                     for (int dy = y * 4; dy < (y * 4) + 4; dy++) {
@@ -390,11 +422,14 @@ public class JBWEB {
 
         for (Area area : mapBWEM.getMap().getAreas()){
             for (ChokePoint choke : area.getChokePoints()){
-                List<TilePosition> tileGeography = new ArrayList<>();
+                // Geometry is stored per WalkPosition, keep each TilePosition once in the order it first appears
+                Set<TilePosition> tileGeography = new LinkedHashSet<>();
                 for (WalkPosition geo : choke.getGeometry()) {
                     tileGeography.add(geo.toTilePosition());
                 }
-                chokeTiles.put(choke, tileGeography);
+                List<TilePosition> tiles = new ArrayList<>(tileGeography);
+                chokeTiles.put(choke, tiles);
+                chokeDistances.put(choke, new ChokeDistance(tiles));
             }
         }
 
@@ -406,7 +441,7 @@ public class JBWEB {
         findLines();
     }
 
-    /// Stores used tiles if it is a building. Increments defense counters for any stations where the placed building is a static defense unit.
+    /// Stores used tiles if it is a building. Increments defense counters for any Stations or Walls where the placed building is a static defense unit.
     public static void onUnitDiscover(Unit unit) {
         TilePosition tile = unit.getTilePosition();
         UnitType type = unit.getType();
@@ -417,6 +452,7 @@ public class JBWEB {
 
         // Add used tiles
         if (okayToAdd) {
+            DefenseCounter.update(tile, type.tileWidth(), type.tileHeight(), -1);
             for (int x = tile.x; x < tile.x + type.tileWidth(); x++) {
                 for (int y = tile.y; y < tile.y + type.tileHeight(); y++) {
                     TilePosition t = new TilePosition(x, y);
@@ -425,13 +461,46 @@ public class JBWEB {
                     usedGrid[x][y] = type;
                 }
             }
+            usedBits.set(tile.x, tile.y, type.tileWidth(), type.tileHeight());
+            DefenseCounter.update(tile, type.tileWidth(), type.tileHeight(), 1);
+            PlacementIndex.update(tile, type.tileWidth(), type.tileHeight());
 
             // Clear pathfinding cache
             Pathfinding.clearCache();
         }
+
+        // Our Pylons add their power field to the power grid
+        if (type == UnitType.Protoss_Pylon && unit.getPlayer() == game.self()) {
+            PowerGrid.addPylon(unit);
+        }
+
+        // Our static defenses add their weapon range to the coverage grid, a morph replaces the previous range
+        if (unit.getPlayer() == game.self()) {
+            CoverageGrid.addDefense(unit);
+        }
+
+        // Creep producing buildings start new creep frontiers
+        if (unit.getPlayer() == game.self()
+                && (type == UnitType.Zerg_Hatchery || type == UnitType.Zerg_Lair || type == UnitType.Zerg_Hive || type == UnitType.Zerg_Creep_Colony)) {
+            Blocks.onCreepSource(tile, type);
+        }
+
+        // Plan Blocks at any Station we take after the game starts
+        if (!gameStart && type.isResourceDepot() && unit.getPlayer() == game.self()) {
+            Station station = Stations.getClosestStation(tile);
+            if (station != null && station.getBWEMBase().getLocation().equals(tile)) {
+                Blocks.findBlocks(station.getBWEMBase().getArea());
+            }
+        }
     }
 
-    /// Removes used tiles if it is a building. Decrements defense counters for any stations where the destroyed building is a static defense unit.
+    /// Continues any work that JBWEB spreads across frames, such as Block generation at new Stations and finishing asynchronous Walls. Call this every frame.
+    public static void onFrame() {
+        Blocks.onFrame();
+        Walls.onFrame();
+    }
+
+    /// Removes used tiles if it is a building. Decrements defense counters for any Stations or Walls where the destroyed building is a static defense unit.
     public static void onUnitDestroy(Unit unit) {
         TilePosition tile = unit.getTilePosition();
         UnitType type = unit.getType();
@@ -442,6 +511,7 @@ public class JBWEB {
 
         // Add used tiles
         if (okayToRemove) {
+            DefenseCounter.update(tile, type.tileWidth(), type.tileHeight(), -1);
             for (int x = tile.x; x < tile.x + type.tileWidth(); x++) {
                 for (int y = tile.y; y < tile.y + type.tileHeight(); y++) {
                     TilePosition t = new TilePosition(x, y);
@@ -450,10 +520,21 @@ public class JBWEB {
                     usedGrid[x][y] = UnitType.None;
                 }
             }
+            usedBits.clear(tile.x, tile.y, type.tileWidth(), type.tileHeight());
+            DefenseCounter.update(tile, type.tileWidth(), type.tileHeight(), 1);
+            PlacementIndex.update(tile, type.tileWidth(), type.tileHeight());
 
             // Clear pathfinding cache
             Pathfinding.clearCache();
         }
+
+        // Remove the power field of our Pylons
+        if (type == UnitType.Protoss_Pylon) {
+            PowerGrid.removePylon(unit);
+        }
+
+        // Remove the coverage of our static defenses
+        CoverageGrid.removeDefense(unit);
     }
 
     ///  Calls JBWEB::onUnitDiscover.
@@ -461,6 +542,31 @@ public class JBWEB {
         onUnitDiscover(unit);
     }
 
+    /// Returns true if a Pylon placed at the first BWAPI::TilePosition powers a building of the given BWAPI::UnitType placed at the second.
+    /// <param name="pylon"> The top left BWAPI::TilePosition of the Pylon.
+    /// <param name="here"> The top left BWAPI::TilePosition of the building.
+    /// <param name="type"> The BWAPI::UnitType of the building.
+    public static boolean powers(TilePosition pylon, TilePosition here, UnitType type) {
+        return PowerGrid.powers(pylon.x, pylon.y, here.x, here.y, type);
+    }
+
+    /// Returns true if any of our Pylons, including ones under construction, powers a building of the given BWAPI::UnitType placed here.
+    /// <param name="here"> The top left BWAPI::TilePosition of the building.
+    /// <param name="type"> The BWAPI::UnitType of the building.
+    public static boolean isPowered(TilePosition here, UnitType type) {
+        return PowerGrid.isPowered(here, type);
+    }
+
+    /// Returns how many of our static defenses, including ones under construction, can shoot ground units at this BWAPI::TilePosition.
+    public static int getGroundCoverage(TilePosition here) {
+        return CoverageGrid.getGroundCoverage(here);
+    }
+
+    /// Returns how many of our static defenses, including ones under construction, can shoot air units at this BWAPI::TilePosition.
+    public static int getAirCoverage(TilePosition here) {
+        return CoverageGrid.getAirCoverage(here);
+    }
+
     /// Adds a section of BWAPI::TilePositions to the BWEB overlap grid.
     public static void addReserve(TilePosition t, int w, int h) {
         for (int x = t.x; x < t.x + w; x++) {
@@ -471,6 +577,7 @@ public class JBWEB {
                 }
             }
         }
+        reservedBits.set(t.x, t.y, w, h);
     }
 
     /// Removes a section of BWAPI::TilePositions from the BWEB overlap grid.
@@ -483,43 +590,56 @@ public class JBWEB {
                 }
             }
         }
+        reservedBits.clear(t.x, t.y, w, h);
     }
 
     /// Returns true if a section of BWAPI::TilePositions are within BWEBs overlap grid.
     public static boolean isReserved(TilePosition here, int width, int height) {
-        for (int x = here.x; x < here.x + width; x++) {
-            for (int y = here.y; y < here.y + height; y++) {
-                TilePosition t = new TilePosition(x, y);
-                if (!t.isValid(game)) {
-                    continue;
-                }
-                if (overlapGrid[x][y] > 0){
-                    return true;
-                }
-            }
-        }
-        return false;
+        return isReserved(reservedBits, here, width, height);
+    }
+
+    /// Returns true if a section of BWAPI::TilePositions are within a copy of the overlap grid.
+    static boolean isReserved(Bitboard grid, TilePosition here, int width, int height) {
+        return grid.anyClipped(here.x, here.y, width, height);
     }
 
     /// Adds a section of BWAPI::TilePositions to the BWEB used grid.
     public static void addUsed(TilePosition t, UnitType type) {
+        DefenseCounter.update(t, type.tileWidth(), type.tileHeight(), -1);
+        addUsed(usedGrid, usedBits, t, type);
+        DefenseCounter.update(t, type.tileWidth(), type.tileHeight(), 1);
+        PlacementIndex.update(t, type.tileWidth(), type.tileHeight());
+    }
+
+    /// Adds a section of BWAPI::TilePositions to a copy of the used grid.
+    static void addUsed(UnitType[][] grid, Bitboard bits, TilePosition t, UnitType type) {
         for (int x = t.x; x < t.x + type.tileWidth(); x++) {
             for (int y = t.y; y < t.y + type.tileHeight(); y++)
                 if (new TilePosition(x, y).isValid(game))
-                    usedGrid[x][y] = type;
+                    grid[x][y] = type;
         }
+        bits.set(t.x, t.y, type.tileWidth(), type.tileHeight());
     }
 
     /// Removes a section of BWAPI::TilePositions from the BWEB used grid.
     public static void removeUsed(TilePosition t, int w, int h) {
+        DefenseCounter.update(t, w, h, -1);
+        removeUsed(usedGrid, usedBits, t, w, h);
+        DefenseCounter.update(t, w, h, 1);
+        PlacementIndex.update(t, w, h);
+    }
+
+    /// Removes a section of BWAPI::TilePositions from a copy of the used grid.
+    static void removeUsed(UnitType[][] grid, Bitboard bits, TilePosition t, int w, int h) {
         for (int x = t.x; x < t.x + w; x++) {
             for (int y = t.y; y < t.y + h; y++) {
                 TilePosition t2 = new TilePosition(x, y);
                 if (t2.isValid(game)) {
-                    usedGrid[x][y] = UnitType.None;
+                    grid[x][y] = UnitType.None;
                 }
             }
         }
+        bits.clear(t.x, t.y, w, h);
     }
 
     /// Returns the first UnitType found in a section of BWAPI::TilePositions, if it is within BWEBs used grid.
@@ -527,19 +647,49 @@ public class JBWEB {
     /// <param name="width"> The width of BWAPI::TilePositions to check. Default should be 1.
     /// <param name="height"> The height of BWAPI::TilePositions to check. Default should be 1.
     public static UnitType isUsed(TilePosition here, int width, int height) {
+        return isUsed(usedGrid, here, width, height);
+    }
+
+    /// Returns the first UnitType found in a section of BWAPI::TilePositions, if it is within a copy of the used grid.
+    static UnitType isUsed(UnitType[][] grid, TilePosition here, int width, int height) {
         for (int x = here.x; x < here.x + width; x++) {
             for (int y = here.y; y < here.y + height; y++) {
                 TilePosition t = new TilePosition(x, y);
                 if (!t.isValid(game)) {
                     continue;
                 }
-                if (usedGrid[x][y] != UnitType.None)
-                return usedGrid[x][y];
+                if (grid[x][y] != UnitType.None)
+                return grid[x][y];
             }
         }
         return UnitType.None;
     }
 
+    /// Returns a copy of the BWEB overlap grid, for searches that run away from the game thread.
+    static Bitboard copyReserveBits() {
+        return new Bitboard(reservedBits);
+    }
+
+    /// Returns a copy of the BWEB used grid, for searches that need to place buildings without changing the real grid.
+    static UnitType[][] copyUsedGrid() {
+        UnitType[][] grid = new UnitType[256][];
+        for (int x = 0; x < 256; x++) {
+            grid[x] = usedGrid[x].clone();
+        }
+        return grid;
+    }
+
+    /// Returns a copy of the tiles in the BWEB used grid, kept alongside a copy of the used grid.
+    static Bitboard copyUsedBits() {
+        return new Bitboard(usedBits);
+    }
+
+    /// Returns true if any BWAPI::TilePosition in a section is off the map or can't be built on because of terrain.
+    /// <param name="blockTerrain"> Set as true to use the buildability of BWEM tiles that Blocks are placed with.
+    static boolean isUnbuildableTerrain(TilePosition here, int width, int height, boolean blockTerrain) {
+        return (blockTerrain ? unbuildableBits : unplaceableBits).any(here.x, here.y, width, height);
+    }
+
     /// Returns true if a BWAPI::TilePosition is fully walkable.
     /// <param name="tile"> The BWAPI::TilePosition you want to check.
     public static boolean isWalkable(TilePosition here) {
@@ -550,31 +700,28 @@ public class JBWEB {
     /// <param name="type"> The BWAPI::UnitType of the structure you want to build.
     /// <param name="tile"> The BWAPI::TilePosition you want to build on.
     public static boolean isPlaceable(UnitType type, TilePosition location) {
-        if (type.requiresCreep()) {
-            for (int x = location.x; x < location.x + type.tileWidth(); x++) {
-                TilePosition creepTile = new TilePosition(x, location.y + type.tileHeight());
-                if (!game.isBuildable(creepTile))
-                    return false;
-            }
-        }
+        return isPlaceable(usedBits, type, location);
+    }
 
+    /// Returns true if the given BWAPI::UnitType is placeable at the given BWAPI::TilePosition, using a copy of the used grid.
+    static boolean isPlaceable(Bitboard grid, UnitType type, TilePosition location) {
         if (type.isResourceDepot() && !game.canBuildHere(location, type)) {
             return false;
         }
+        return isFootprintPlaceable(grid, type, location);
+    }
 
-        for (int x = location.x; x < location.x + type.tileWidth(); x++) {
-            for (int y = location.y; y < location.y + type.tileHeight(); y++) {
-
-                TilePosition tile = new TilePosition(x, y);
-                if (!tile.isValid(game)
-                        || !game.isBuildable(tile)
-                        || !game.isWalkable(tile.toWalkPosition())
-                        || isUsed(tile, 1, 1) != UnitType.None) {
-                    return false;
-                }
-            }
+    /// Same as isPlaceable, but doesn't ask BWAPI if a resource depot can be built here, which is only safe on the game thread.
+    /// Only reads grids built in onStart, so Wall searches can call it from worker threads.
+    static boolean isFootprintPlaceable(Bitboard grid, UnitType type, TilePosition location) {
+        // The row below a creep building has to be buildable terrain
+        if (type.requiresCreep() && nonBuildableBits.any(location.x, location.y + type.tileHeight(), type.tileWidth(), 1)) {
+            return false;
         }
-        return true;
+
+        // Off the map, unbuildable, unwalkable or used tiles under the footprint
+        return !unplaceableBits.any(location.x, location.y, type.tileWidth(), type.tileHeight())
+                && !grid.any(location.x, location.y, type.tileWidth(), type.tileHeight());
     }
 
     /// Returns how many BWAPI::TilePosition are within a BWEM::Area.
@@ -690,17 +837,12 @@ public class JBWEB {
 
     /// Returns the closest BWAPI::Position that makes up the geometry of a BWEM::ChokePoint to another BWAPI::Position.
     public static Position getClosestChokeTile(ChokePoint choke, Position here) {
-        double best = Double.MAX_VALUE;
-        Position posBest = Position.Invalid;
-        for (TilePosition tile : getChokeTiles(choke)) {
-            Position p = new Position(tile.toPosition().x + 16, tile.toPosition().y + 16);
-            double dist = p.getDistance(here);
-            if (dist < best) {
-                posBest = p;
-                best = dist;
-            }
-        }
-        return posBest;
+        return chokeDistances.get(choke).getClosestTile(here);
+    }
+
+    /// Returns the distance from a BWAPI::Position to the closest BWAPI::Position that makes up the geometry of a BWEM::ChokePoint.
+    public static double getChokeDistance(ChokePoint choke, Position here) {
+        return chokeDistances.get(choke).getDistance(here);
     }
 
     /// Returns a set of BWAPI::TilePositions that make up the geometry of a BWEM::ChokePoint.
@@ -739,30 +881,8 @@ public class JBWEB {
     /// <param name="type"> The BWAPI::UnitType of the structure you want to build.
     /// <param name="tile"> The BWAPI::TilePosition you want to build closest to.
     public static TilePosition getBuildPosition(UnitType type, TilePosition searchCenter) {
-        double distBest = Double.MAX_VALUE;
-        TilePosition tileBest = TilePosition.Invalid;
-
-        // Search through each block to find the closest block and valid position
-        for (Block block : Blocks.getBlocks()) {
-            List<TilePosition> placements;
-
-            if (type.tileWidth() == 4) {
-                placements = block.getLargeTiles();
-            } else if (type.tileWidth() == 3) {
-                placements = block.getMediumTiles();
-            } else {
-                placements = block.getSmallTiles();
-            }
-
-            for (TilePosition tile : placements) {
-                double dist = tile.getDistance(searchCenter);
-                if (dist < distBest && isPlaceable(type, tile)) {
-                    distBest = dist;
-                    tileBest = tile;
-                }
-            }
-        }
-        return tileBest;
+        // Search the free Block placements of this size outwards from the search center
+        return PlacementIndex.getClosest(type, searchCenter);
     }
 
     /// Returns the closest buildable BWAPI::TilePosition for a defensive structure.
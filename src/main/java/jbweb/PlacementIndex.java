@@ -0,0 +1,162 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PlacementIndex {
+    // Size classes of Block placements, matching the footprints used by getBuildPosition
+    static final int SMALL = 0;
+    static final int MEDIUM = 1;
+    static final int LARGE = 2;
+    private static final int[] classWidth = {2, 3, 4};
+    private static final int[] classHeight = {2, 2, 3};
+
+    // Placements are bucketed into square cells of TilePositions for nearest neighbor queries
+    private static final int cellSize = 8;
+    private static final int cells = 256 / cellSize;
+
+    private static boolean placementGrid[][][] = new boolean[3][256][256];
+    private static boolean freeGrid[][][] = new boolean[3][256][256];
+    private static int freeCount[][][] = new int[3][cells][cells];
+    private static List<List<TilePosition>> cellPlacements = new ArrayList<>();
+    private static int placements = 0;
+
+    static {
+        for (int i = 0; i < 3 * cells * cells; i++) {
+            cellPlacements.add(new ArrayList<>());
+        }
+    }
+
+    /// Forgets every placement, called when JBWEB starts.
+    static void reset() {
+        placementGrid = new boolean[3][256][256];
+        freeGrid = new boolean[3][256][256];
+        freeCount = new int[3][cells][cells];
+        for (List<TilePosition> cell : cellPlacements) {
+            cell.clear();
+        }
+        placements = 0;
+    }
+
+    private static List<TilePosition> getCell(int size, int cx, int cy) {
+        return cellPlacements.get((size * cells + cx) * cells + cy);
+    }
+
+    /// Returns the size class used for placements of the given BWAPI::UnitType.
+    static int sizeOf(UnitType type) {
+        if (type.tileWidth() == 4) {
+            return LARGE;
+        } else if (type.tileWidth() == 3) {
+            return MEDIUM;
+        }
+        return SMALL;
+    }
+
+    private static boolean isFree(int size, TilePosition here) {
+        return JBWEB.isUsed(here, classWidth[size], classHeight[size]) == UnitType.None;
+    }
+
+    private static void setFree(int size, int x, int y, boolean free) {
+        if (freeGrid[size][x][y] == free) {
+            return;
+        }
+        freeGrid[size][x][y] = free;
+        freeCount[size][x / cellSize][y / cellSize] += free ? 1 : -1;
+    }
+
+    /// Adds a placement of the given size class to the index.
+    static void add(int size, TilePosition here) {
+        if (!here.isValid(JBWEB.game) || placementGrid[size][here.x][here.y]) {
+            return;
+        }
+        placementGrid[size][here.x][here.y] = true;
+        getCell(size, here.x / cellSize, here.y / cellSize).add(here);
+        setFree(size, here.x, here.y, isFree(size, here));
+        placements++;
+    }
+
+    /// Removes a placement of the given size class from the index.
+    static void remove(int size, TilePosition here) {
+        if (!here.isValid(JBWEB.game) || !placementGrid[size][here.x][here.y]) {
+            return;
+        }
+        setFree(size, here.x, here.y, false);
+        placementGrid[size][here.x][here.y] = false;
+        getCell(size, here.x / cellSize, here.y / cellSize).remove(here);
+        placements--;
+    }
+
+    /// Adds every placement of a Block to the index.
+    static void addBlock(Block block) {
+        for (TilePosition tile : block.getSmallTiles()) {
+            add(SMALL, tile);
+        }
+        for (TilePosition tile : block.getMediumTiles()) {
+            add(MEDIUM, tile);
+        }
+        for (TilePosition tile : block.getLargeTiles()) {
+            add(LARGE, tile);
+        }
+    }
+
+    /// Removes every placement of a Block from the index.
+    static void removeBlock(Block block) {
+        for (TilePosition tile : block.getSmallTiles()) {
+            remove(SMALL, tile);
+        }
+        for (TilePosition tile : block.getMediumTiles()) {
+            remove(MEDIUM, tile);
+        }
+        for (TilePosition tile : block.getLargeTiles()) {
+            remove(LARGE, tile);
+        }
+    }
+
+    /// Refreshes the free state of any placement overlapping a section of BWAPI::TilePositions whose used state changed.
+    static void update(TilePosition here, int width, int height) {
+        if (placements == 0) {
+            return;
+        }
+
+        for (int size = 0; size < 3; size++) {
+            int x1 = Math.max(0, here.x - classWidth[size] + 1);
+            int y1 = Math.max(0, here.y - classHeight[size] + 1);
+            int x2 = Math.min(255, here.x + width - 1);
+            int y2 = Math.min(255, here.y + height - 1);
+            for (int x = x1; x <= x2; x++) {
+                for (int y = y1; y <= y2; y++) {
+                    if (placementGrid[size][x][y]) {
+                        setFree(size, x, y, isFree(size, new TilePosition(x, y)));
+                    }
+                }
+            }
+        }
+    }
+
+    /// Returns the closest free placement that the given BWAPI::UnitType can be placed at, searching outwards in rings of cells.
+    static TilePosition getClosest(UnitType type, TilePosition searchCenter) {
+        int size = sizeOf(type);
+        TilePosition tileBest = new SpatialIndex.RingSearch<TilePosition>() {
+            void visit(int cx, int cy) {
+                if (freeCount[size][cx][cy] == 0) {
+                    return;
+                }
+
+                for (TilePosition tile : getCell(size, cx, cy)) {
+                    if (!freeGrid[size][tile.x][tile.y]) {
+                        continue;
+                    }
+
+                    double dist = tile.getDistance(searchCenter);
+                    if (dist < distBest && JBWEB.isPlaceable(type, tile)) {
+                        distBest = dist;
+                        best = tile;
+                    }
+                }
+            }
+        }.run(searchCenter, cellSize, cells);
+        return tileBest != null ? tileBest : TilePosition.Invalid;
+    }
+}
@@ -0,0 +1,96 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class PowerGrid {
+    // Power is checked for 4 wide buildings and for every other footprint
+    private static final int LARGE = 0;
+    private static final int OTHER = 1;
+
+    // Offsets of a building's top left tile from a Pylon's top left tile range from -8 to 7, each row is a bitmask of x offsets
+    private static final int offset = 8;
+    private static final int span = 16;
+    private static final int[][] masks = new int[2][span];
+
+    private static int powerGrid[][][] = new int[2][256][256];
+    private static Set<Integer> pylons = new HashSet<>();
+
+    static {
+        // 4 wide buildings
+        setRows(LARGE, -5, -5, -4, 1);
+        setRows(LARGE, 4, 4, -4, 1);
+        setRows(LARGE, -4, -4, -7, 4);
+        setRows(LARGE, 3, 3, -7, 4);
+        setRows(LARGE, -3, -3, -8, 5);
+        setRows(LARGE, 2, 2, -8, 5);
+        setRows(LARGE, -2, 1, -8, 6);
+
+        // Every other building
+        setRows(OTHER, 4, 4, -3, 2);
+        setRows(OTHER, -4, -4, -6, 5);
+        setRows(OTHER, 3, 3, -6, 5);
+        setRows(OTHER, -3, 2, -7, 6);
+    }
+
+    /// Forgets every Pylon, called when JBWEB starts.
+    static void reset() {
+        powerGrid = new int[2][256][256];
+        pylons.clear();
+    }
+
+    private static void setRows(int size, int dy1, int dy2, int dx1, int dx2) {
+        for (int dy = dy1; dy <= dy2; dy++) {
+            for (int dx = dx1; dx <= dx2; dx++) {
+                masks[size][dy + offset] |= 1 << (dx + offset);
+            }
+        }
+    }
+
+    private static int sizeOf(UnitType type) {
+        return type.tileWidth() == 4 ? LARGE : OTHER;
+    }
+
+    /// Returns true if a Pylon with its top left at (px, py) powers a building of the given type with its top left at (x, y).
+    static boolean powers(int px, int py, int x, int y, UnitType type) {
+        int dx = x - px + offset;
+        int dy = y - py + offset;
+        return ((dx | dy) & ~(span - 1)) == 0 && (masks[sizeOf(type)][dy] & (1 << dx)) != 0;
+    }
+
+    // Stamps the power field of a Pylon onto the coverage grid
+    private static void stamp(TilePosition pylon, int change) {
+        for (int size = 0; size < 2; size++) {
+            for (int dy = 0; dy < span; dy++) {
+                for (int dx = 0; dx < span; dx++) {
+                    int x = pylon.x + dx - offset;
+                    int y = pylon.y + dy - offset;
+                    if ((masks[size][dy] & (1 << dx)) != 0 && x >= 0 && y >= 0 && x < 256 && y < 256) {
+                        powerGrid[size][x][y] += change;
+                    }
+                }
+            }
+        }
+    }
+
+    /// Adds the power field of one of our Pylons.
+    static void addPylon(Unit unit) {
+        if (pylons.add(unit.getID())) {
+            stamp(unit.getTilePosition(), 1);
+        }
+    }
+
+    /// Removes the power field of one of our Pylons.
+    static void removePylon(Unit unit) {
+        if (pylons.remove(unit.getID())) {
+            stamp(unit.getTilePosition(), -1);
+        }
+    }
+
+    /// Returns true if any of our Pylons powers a building of the given type placed here.
+    static boolean isPowered(TilePosition here, UnitType type) {
+        return here.x >= 0 && here.y >= 0 && here.x < 256 && here.y < 256 && powerGrid[sizeOf(type)][here.x][here.y] > 0;
+    }
+}
@@ -0,0 +1,140 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+public class SpatialIndex<T> {
+    private static final int cellSize = 8;
+    private static final int cells = 256 / cellSize;
+
+    private static class Entry<T> {
+        final TilePosition tile;
+        final T item;
+
+        Entry(TilePosition _tile, T _item) {
+            tile = _tile;
+            item = _item;
+        }
+    }
+
+    private final List<List<Entry<T>>> cellEntries = new ArrayList<>();
+    private int size = 0;
+
+    public SpatialIndex() {
+        for (int i = 0; i < cells * cells; i++) {
+            cellEntries.add(new ArrayList<>());
+        }
+    }
+
+    private List<Entry<T>> getCell(TilePosition here) {
+        int cx = Math.min(cells - 1, Math.max(0, here.x / cellSize));
+        int cy = Math.min(cells - 1, Math.max(0, here.y / cellSize));
+        return cellEntries.get(cx * cells + cy);
+    }
+
+    /// Adds an item keyed by a BWAPI::TilePosition.
+    public void add(TilePosition here, T item) {
+        getCell(here).add(new Entry<>(here, item));
+        size++;
+    }
+
+    /// Removes an item that was added with the given BWAPI::TilePosition.
+    public void remove(TilePosition here, T item) {
+        if (getCell(here).removeIf(entry -> entry.item == item)) {
+            size--;
+        }
+    }
+
+    /// Removes every item.
+    public void clear() {
+        for (List<Entry<T>> cell : cellEntries) {
+            cell.clear();
+        }
+        size = 0;
+    }
+
+    /// Returns how many items are stored.
+    public int size() {
+        return size;
+    }
+
+    /// Returns every item keyed within a section of BWAPI::TilePositions.
+    public List<T> query(TilePosition here, int width, int height) {
+        List<T> items = new ArrayList<>();
+        int cx1 = Math.max(0, here.x / cellSize);
+        int cy1 = Math.max(0, here.y / cellSize);
+        int cx2 = Math.min(cells - 1, (here.x + width - 1) / cellSize);
+        int cy2 = Math.min(cells - 1, (here.y + height - 1) / cellSize);
+        for (int cx = cx1; cx <= cx2; cx++) {
+            for (int cy = cy1; cy <= cy2; cy++) {
+                for (Entry<T> entry : cellEntries.get(cx * cells + cy)) {
+                    if (entry.tile.x >= here.x && entry.tile.x < here.x + width && entry.tile.y >= here.y && entry.tile.y < here.y + height) {
+                        items.add(entry.item);
+                    }
+                }
+            }
+        }
+        return items;
+    }
+
+    /// Returns the item keyed closest to the given BWAPI::TilePosition, searching outwards in rings of cells.
+    public T getClosest(TilePosition searchCenter) {
+        return getClosest(searchCenter, item -> true);
+    }
+
+    /// Returns the item keyed closest to the given BWAPI::TilePosition that passes the filter.
+    public T getClosest(TilePosition searchCenter, Predicate<T> filter) {
+        if (size == 0) {
+            return null;
+        }
+
+        return new RingSearch<T>() {
+            void visit(int cx, int cy) {
+                for (Entry<T> entry : cellEntries.get(cx * cells + cy)) {
+                    double dist = entry.tile.getDistance(searchCenter);
+                    if (dist < distBest && filter.test(entry.item)) {
+                        distBest = dist;
+                        best = entry.item;
+                    }
+                }
+            }
+        }.run(searchCenter, cellSize, cells);
+    }
+
+    // Visits square cells of TilePositions outwards in rings around a center, keeping the closest item found so far
+    abstract static class RingSearch<R> {
+        double distBest = Double.MAX_VALUE;
+        R best;
+
+        // Offers every item in a cell, storing it in best and distBest if it's closer
+        abstract void visit(int cx, int cy);
+
+        R run(TilePosition searchCenter, int cellSize, int cells) {
+            // Centers off the grid start from the closest cell on its edge, which only makes each ring further away
+            int cx = Math.min(cells - 1, Math.max(0, Math.floorDiv(searchCenter.x, cellSize)));
+            int cy = Math.min(cells - 1, Math.max(0, Math.floorDiv(searchCenter.y, cellSize)));
+            int maxRing = Math.max(Math.max(cx, cells - 1 - cx), Math.max(cy, cells - 1 - cy));
+
+            for (int r = 0; r <= maxRing; r++) {
+                // Every tile in this ring is at least this far away, nothing closer can be found beyond here
+                if (r > 0 && (r - 1) * cellSize + 1 > distBest) {
+                    break;
+                }
+
+                // Only the cells on the edge of the ring, columns on either side are visited fully
+                for (int x = Math.max(0, cx - r); x <= Math.min(cells - 1, cx + r); x++) {
+                    int step = (x == cx - r || x == cx + r) ? 1 : 2 * r;
+                    for (int y = cy - r; y <= cy + r; y += step) {
+                        if (y >= 0 && y < cells) {
+                            visit(x, y);
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package jbweb;
 import bwapi.*;
 import bwem.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class Station {
@@ -11,6 +12,13 @@ public class Station {
     private final Position resourceCentroid;
     private final boolean main;
     private final boolean natural;
+    private final DefenseCounter defenseCounter = new DefenseCounter();
+
+    // Mining paths of every mineral field then geyser, packed end to end as x << 8 | y from the depot to the resource
+    private int[] resourceTiles = new int[0];
+    private int[] pathStarts = new int[1];
+    private int[] pathTiles = new int[0];
+    private int[] pathDistances = new int[0];
 
     Station(Position _resourceCentroid, List<TilePosition> _defenses, Base _base, boolean _main, boolean _natural) {
         resourceCentroid = _resourceCentroid;
@@ -18,6 +26,38 @@ public class Station {
         base = _base;
         main = _main;
         natural = _natural;
+        defenseCounter.addLocations(defenses);
+    }
+
+    // Stores the line of tiles from each resource to the depot, in the order of the resources
+    void setMiningPaths(List<TilePosition> resources, List<List<Integer>> paths) {
+        int total = 0;
+        for (List<Integer> path : paths) {
+            total += path.size();
+        }
+
+        resourceTiles = new int[resources.size()];
+        pathStarts = new int[resources.size() + 1];
+        pathTiles = new int[total];
+        pathDistances = new int[resources.size()];
+        for (int i = 0; i < resources.size(); i++) {
+            resourceTiles[i] = (resources.get(i).x << 8) | resources.get(i).y;
+            List<Integer> path = paths.get(i);
+            int start = pathStarts[i];
+            pathStarts[i + 1] = start + path.size();
+
+            // Paths are walked from the resource, store them from the depot
+            int distance = 0;
+            for (int j = 0; j < path.size(); j++) {
+                pathTiles[start + j] = path.get(path.size() - 1 - j);
+                if (j > 0) {
+                    int dx = Math.abs((pathTiles[start + j] >> 8) - (pathTiles[start + j - 1] >> 8));
+                    int dy = Math.abs((pathTiles[start + j] & 255) - (pathTiles[start + j - 1] & 255));
+                    distance += (dx != 0 && dy != 0) ? 45 : 32;
+                }
+            }
+            pathDistances[i] = distance;
+        }
     }
 
     public boolean equals(Station s) {
@@ -44,30 +84,48 @@ public class Station {
         return natural;
     }
 
-    public int getGroundDefenseCount() {
-        int count = 0;
-        for (TilePosition defense : defenses) {
-            UnitType type = JBWEB.isUsed(defense, 1, 1);
-            if (type == UnitType.Protoss_Photon_Cannon
-                    || type == UnitType.Zerg_Sunken_Colony
-                    || type == UnitType.Terran_Bunker) {
-                count++;
+    /// Returns the number of mineral fields and geysers of this Station, mineral fields are indexed first.
+    public int getResourceCount() {
+        return resourceTiles.length;
+    }
+
+    /// Returns the index of the mineral field or geyser with the given top left BWAPI::TilePosition, or -1 if it doesn't belong to this Station.
+    public int getResourceIndex(TilePosition resource) {
+        int packed = (resource.x << 8) | resource.y;
+        for (int i = 0; i < resourceTiles.length; i++) {
+            if (resourceTiles[i] == packed) {
+                return i;
             }
         }
-        return count;
+        return -1;
     }
 
-    public int getAirDefenseCount() {
-        int count = 0;
-        for (TilePosition defense : defenses) {
-            UnitType type = JBWEB.isUsed(defense, 1, 1);
-            if (type == UnitType.Protoss_Photon_Cannon
-                    || type == UnitType.Zerg_Spore_Colony
-                    || type == UnitType.Terran_Missile_Turret) {
-                count++;
-            }
+    /// Returns the BWAPI::TilePositions workers walk along from the depot to a resource, starting at the depot center and ending at the resource center.
+    public List<TilePosition> getMiningPath(int resource) {
+        List<TilePosition> path = new ArrayList<>();
+        for (int i = pathStarts[resource]; i < pathStarts[resource + 1]; i++) {
+            path.add(new TilePosition(pathTiles[i] >> 8, pathTiles[i] & 255));
         }
-        return count;
+        return path;
+    }
+
+    /// Returns the length in pixels of the mining path to a resource.
+    public int getMiningDistance(int resource) {
+        return pathDistances[resource];
+    }
+
+    /// Returns the length in pixels of the mining path to a mineral field or geyser, or -1 if it doesn't belong to this Station.
+    public int getMiningDistance(Unit resource) {
+        int i = getResourceIndex(resource.getTilePosition());
+        return i >= 0 ? pathDistances[i] : -1;
+    }
+
+    public int getGroundDefenseCount() {
+        return defenseCounter.getGround();
+    }
+
+    public int getAirDefenseCount() {
+        return defenseCounter.getAir();
     }
 
     public void draw() {
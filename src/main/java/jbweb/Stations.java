@@ -9,6 +9,15 @@ public class Stations {
     private static List<Station> stations = new ArrayList<>();
     private static List<Station> mains = new ArrayList<>();
     private static List<Station> naturals = new ArrayList<>();
+    private static List<Base> bases = new ArrayList<>();
+    private static Map<Base, Integer> baseIndices = new HashMap<>();
+    private static double[][] baseDistances = new double[0][0];
+    private static Bitboard resourceLines = new Bitboard(256, 256);
+    private static SpatialIndex<Station> stationIndex = new SpatialIndex<>();
+    private static SpatialIndex<Station> mainIndex = new SpatialIndex<>();
+    private static SpatialIndex<Station> naturalIndex = new SpatialIndex<>();
+    private static GroundField stationField, mainField, naturalField;
+    private static Map<Station, GroundField> stationFields = new HashMap<>();
 
     private static List<TilePosition> stationDefenses(Base base, boolean placeRight, boolean placeBelow, boolean isMain, boolean isNatural) {
         List<TilePosition> defenses = new ArrayList<>();
@@ -161,31 +170,43 @@ public class Stations {
         return defenses;
     }
 
-    private static void addResourceOverlap(Position resourceCenter, Position startCenter, Position stationCenter) {
-        TilePosition test = new TilePosition(startCenter);
-        TilePosition stationTilePosition = new TilePosition(stationCenter);
+    // Reserves a line of tiles from a resource to its station, appending each tile of the line to the path packed as x << 8 | y
+    private static void addResourceOverlap(int startX, int startY, Position stationCenter, List<Integer> path) {
+        int testX = startX / 32, testY = startY / 32;
+        int stationX = stationCenter.x / 32, stationY = stationCenter.y / 32;
+        int width = JBWEB.game.mapWidth(), height = JBWEB.game.mapHeight();
+        path.add((testX << 8) | testY);
 
-        while (test.x != stationTilePosition.x || test.y != stationTilePosition.y) {
+        // Step towards the station, preferring tiles that aren't reserved yet
+        while (testX != stationX || testY != stationY) {
             double distBest = Double.MAX_VALUE;
-            TilePosition current = test;
-            for (int x = current.x - 1; x <= current.x + 1; x++) {
-                for (int y = current.y - 1; y <= current.y + 1; y++) {
-                    TilePosition t = new TilePosition(x, y);
-                    Position p = new Position(t.toPosition().x + 16, t.toPosition().y + 16);
-
-                    if (!t.isValid(JBWEB.game))
+            int currentX = testX, currentY = testY;
+            for (int x = currentX - 1; x <= currentX + 1; x++) {
+                for (int y = currentY - 1; y <= currentY + 1; y++) {
+                    if (x < 0 || y < 0 || x >= width || y >= height)
                         continue;
 
-                    double dist = JBWEB.isReserved(t, 1, 1) ? p.getDistance(stationCenter) + 16 : p.getDistance(stationCenter);
+                    int dx = x * 32 + 16 - stationCenter.x;
+                    int dy = y * 32 + 16 - stationCenter.y;
+                    double dist = Math.sqrt(dx * dx + dy * dy);
+                    if (JBWEB.isReserved(new TilePosition(x, y), 1, 1)) {
+                        dist += 16;
+                    }
                     if (dist <= distBest) {
-                        test = t;
+                        testX = x;
+                        testY = y;
                         distBest = dist;
                     }
                 }
             }
 
-            if (test.isValid(JBWEB.game))
-                JBWEB.addReserve(test, 1, 1);
+            if (testX >= 0 && testY >= 0 && testX < width && testY < height) {
+                JBWEB.addReserve(new TilePosition(testX, testY), 1, 1);
+                resourceLines.set(testX, testY);
+                if (testX != currentX || testY != currentY) {
+                    path.add((testX << 8) | testY);
+                }
+            }
         }
     }
 
@@ -194,31 +215,45 @@ public class Stations {
         // Find all main bases
         List<Base> mainBases = new ArrayList<>();
         List<Base> natBases = new ArrayList<>();
+        bases.clear();
+        baseIndices.clear();
+        stationIndex.clear();
+        mainIndex.clear();
+        naturalIndex.clear();
+        stationField = mainField = naturalField = null;
+        stationFields.clear();
+        resourceLines = new Bitboard(JBWEB.game.mapWidth(), JBWEB.game.mapHeight());
         for (Area area : JBWEB.mapBWEM.getMap().getAreas()) {
             for (Base base : area.getBases()) {
+                baseIndices.put(base, bases.size());
+                bases.add(base);
                 if (base.isStartingLocation())
                     mainBases.add(base);
             }
         }
 
+        // Ground distance between pairs of bases, each measured the first time it's needed
+        baseDistances = new double[bases.size()][bases.size()];
+        for (double[] row : baseDistances) {
+            Arrays.fill(row, Double.NaN);
+        }
+
         // Find all natural bases
         for (Base main : mainBases) {
             Base baseBest = null;
             double distBest = Double.MAX_VALUE;
-            for (Area area : JBWEB.mapBWEM.getMap().getAreas()) {
-                for (Base base : area.getBases()) {
-                    // Must have gas, be accessible and at least 5 mineral patches
-                    if (base.isStartingLocation()
-                            || base.getGeysers().isEmpty()
-                            || base.getArea().getAccessibleNeighbors().isEmpty()
-                            || base.getMinerals().size() < 5)
-                        continue;
-
-                    double dist = JBWEB.getGroundDistance(base.getCenter(), main.getCenter());
-                    if (dist < distBest) {
-                        distBest = dist;
-                        baseBest = base;
-                    }
+            for (Base base : bases) {
+                // Must have gas, be accessible and at least 5 mineral patches
+                if (base.isStartingLocation()
+                        || base.getGeysers().isEmpty()
+                        || base.getArea().getAccessibleNeighbors().isEmpty()
+                        || base.getMinerals().size() < 5)
+                    continue;
+
+                double dist = getBaseDistance(base, main);
+                if (dist < distBest) {
+                    distBest = dist;
+                    baseBest = base;
                 }
             }
 
@@ -228,73 +263,94 @@ public class Stations {
             }
         }
 
-        for (Area area : JBWEB.mapBWEM.getMap().getAreas()) {
-            for (Base base : area.getBases()) {
-                Position resourceCentroid = new Position(0, 0);
-                Position defenseCentroid = new Position(0, 0);
-                int cnt = 0;
-
-                // Resource and defense centroids
-                for (Mineral mineral : base.getMinerals()) {
-                    resourceCentroid = new Position(resourceCentroid.x + mineral.getCenter().x, resourceCentroid.y + mineral.getCenter().y);
-                    cnt++;
-                }
+        for (Base base : bases) {
+            int resourceX = 0, resourceY = 0, defenseX = 0, defenseY = 0;
+            int cnt = 0;
 
-                if (cnt > 0) {
-                    defenseCentroid = new Position(resourceCentroid.x/cnt, resourceCentroid.y/cnt);
-                }
+            // Resource and defense centroids
+            for (Mineral mineral : base.getMinerals()) {
+                Position center = mineral.getCenter();
+                resourceX += center.x;
+                resourceY += center.y;
+                cnt++;
+            }
 
-                for (Geyser gas : base.getGeysers()) {
-                    defenseCentroid = new Position((defenseCentroid.x + gas.getCenter().x)/2, (defenseCentroid.y + gas.getCenter().y)/2);
-                    resourceCentroid = new Position(resourceCentroid.x + gas.getCenter().x, resourceCentroid.y + gas.getCenter().y);
-                    cnt++;
-                }
+            if (cnt > 0) {
+                defenseX = resourceX / cnt;
+                defenseY = resourceY / cnt;
+            }
 
-                if (cnt > 0)
-                    resourceCentroid = new Position(resourceCentroid.x/cnt, resourceCentroid.y/cnt);
+            for (Geyser gas : base.getGeysers()) {
+                Position center = gas.getCenter();
+                defenseX = (defenseX + center.x) / 2;
+                defenseY = (defenseY + center.y) / 2;
+                resourceX += center.x;
+                resourceY += center.y;
+                cnt++;
+            }
 
-                // Add reserved tiles
-                for (Mineral m : base.getMinerals()) {
-                    JBWEB.addReserve(m.getTopLeft(), 2, 1);
-                    addResourceOverlap(resourceCentroid, m.getCenter(), base.getCenter());
-                }
+            if (cnt > 0) {
+                resourceX /= cnt;
+                resourceY /= cnt;
+            }
+            Position resourceCentroid = new Position(resourceX, resourceY);
+
+            // Add reserved tiles, with a line from each resource to the station that workers mine along
+            Position baseCenter = base.getCenter();
+            List<TilePosition> resourceTiles = new ArrayList<>();
+            List<List<Integer>> miningPaths = new ArrayList<>();
+            for (Mineral m : base.getMinerals()) {
+                JBWEB.addReserve(m.getTopLeft(), 2, 1);
+                List<Integer> path = new ArrayList<>();
+                addResourceOverlap(m.getCenter().x, m.getCenter().y, baseCenter, path);
+                resourceTiles.add(m.getTopLeft());
+                miningPaths.add(path);
+            }
 
-                for (Geyser g : base.getGeysers()) {
-                    JBWEB.addReserve(g.getTopLeft(), 4, 2);
-                    addResourceOverlap(resourceCentroid, g.getCenter(), base.getCenter());
-                }
-                JBWEB.addReserve(base.getLocation(), 4, 3);
+            for (Geyser g : base.getGeysers()) {
+                JBWEB.addReserve(g.getTopLeft(), 4, 2);
+                List<Integer> path = new ArrayList<>();
+                addResourceOverlap(g.getCenter().x, g.getCenter().y, baseCenter, path);
+                resourceTiles.add(g.getTopLeft());
+                miningPaths.add(path);
+            }
+            JBWEB.addReserve(base.getLocation(), 4, 3);
 
 
-                // Station info
-                boolean isMain = false;
-                for (Base cb: mainBases) {
-                    if (cb == base) {
-                        isMain = true;
-                        break;
-                    }
+            // Station info
+            boolean isMain = false;
+            for (Base cb: mainBases) {
+                if (cb == base) {
+                    isMain = true;
+                    break;
                 }
+            }
 
-                boolean isNatural = false;
-                for (Base cb: natBases) {
-                    if (cb == base) {
-                        isNatural = true;
-                        break;
-                    }
+            boolean isNatural = false;
+            for (Base cb: natBases) {
+                if (cb == base) {
+                    isNatural = true;
+                    break;
                 }
+            }
 
-                boolean placeRight = base.getCenter().x < defenseCentroid.x;
-                boolean placeBelow = base.getCenter().y < defenseCentroid.y;
-                List<TilePosition> defenses = stationDefenses(base, placeRight, placeBelow, isMain, isNatural);
+            boolean placeRight = baseCenter.x < defenseX;
+            boolean placeBelow = baseCenter.y < defenseY;
+            List<TilePosition> defenses = stationDefenses(base, placeRight, placeBelow, isMain, isNatural);
 
-                // Add to our station lists
-                Station newStation = new Station(resourceCentroid, defenses, base, isMain, isNatural);
-                stations.add(newStation);
+            // Add to our station lists
+            Station newStation = new Station(resourceCentroid, defenses, base, isMain, isNatural);
+            newStation.setMiningPaths(resourceTiles, miningPaths);
+            stations.add(newStation);
+            stationIndex.add(base.getLocation(), newStation);
 
-                if (isMain)
-                    mains.add(newStation);
-                if (isNatural)
-                    naturals.add(newStation);
+            if (isMain) {
+                mains.add(newStation);
+                mainIndex.add(base.getLocation(), newStation);
+            }
+            if (isNatural) {
+                naturals.add(newStation);
+                naturalIndex.add(base.getLocation(), newStation);
             }
         }
     }
@@ -308,43 +364,102 @@ public class Stations {
 
     /// Returns the closest BWEB::Station to the given TilePosition.
     public static Station getClosestStation(TilePosition here) {
-        double distBest = Double.MAX_VALUE;
-        Station bestStation = null;
-        for (Station station : stations) {
-            double dist = here.getDistance(station.getBWEMBase().getLocation());
-
-            if (dist < distBest) {
-                distBest = dist;
-                bestStation = station;
-            }
-        }
-        return bestStation;
+        return stationIndex.getClosest(here);
     }
 
     /// Returns the closest main BWEB::Station to the given TilePosition.
     public static Station getClosestMainStation(TilePosition here) {
-        double distBest = Double.MAX_VALUE;
-        Station bestStation = null;
-        for (Station station : mains) {
-            double dist = here.getDistance(station.getBWEMBase().getLocation());
-
-            if (dist < distBest) {
-                distBest = dist;
-                bestStation = station;
-            }
-        }
-        return bestStation;
+        return mainIndex.getClosest(here);
     }
 
     /// Returns the closest natural BWEB::Station to the given TilePosition.
     public static Station getClosestNaturalStation(TilePosition here) {
-        double distBest = Double.MAX_VALUE;
-        Station bestStation = null;
-        for (Station station : naturals) {
-            double dist = here.getDistance(station.getBWEMBase().getLocation());
+        return naturalIndex.getClosest(here);
+    }
+
+    /// Returns the estimated ground distance between the centers of two BWEM::Bases, cached for both directions once measured.
+    /// The first lookup of a pair costs a ground path query, later lookups of it in either order are free.
+    /// Returns DBL_MAX if either Base isn't known or they aren't connected by ground.
+    public static double getBaseDistance(Base from, Base to) {
+        Integer i = baseIndices.get(from);
+        Integer j = baseIndices.get(to);
+        if (i == null || j == null) {
+            return Double.MAX_VALUE;
+        }
+        if (Double.isNaN(baseDistances[i][j])) {
+            baseDistances[i][j] = i.equals(j) ? 0.0 : JBWEB.getGroundDistance(from.getCenter(), to.getCenter());
+            baseDistances[j][i] = baseDistances[i][j];
+        }
+        return baseDistances[i][j];
+    }
+
+    /// Returns true if a BWAPI::TilePosition was reserved for workers moving between a resource and its BWEB::Station.
+    public static boolean isResourceLine(TilePosition here) {
+        return here.isValid(JBWEB.game) && resourceLines.get(here.x, here.y);
+    }
+
+    // Walking distance field from the centers of a group of Stations, labelled by which one is closest
+    private static GroundField closestField(List<Station> group) {
+        List<TilePosition> sources = new ArrayList<>();
+        for (Station station : group) {
+            sources.add(new TilePosition(station.getBWEMBase().getCenter()));
+        }
+        return new GroundField(sources);
+    }
 
-            if (dist < distBest) {
-                distBest = dist;
+    private static Station closestByGround(List<Station> group, GroundField field, TilePosition here) {
+        int i = field.getSource(here);
+        return i >= 0 ? group.get(i) : null;
+    }
+
+    /// Returns the closest BWEB::Station to the given TilePosition by walking distance, or null if no Station can be walked to.
+    /// The first call measures the whole map once, every call after is a lookup.
+    public static Station getClosestStationByGround(TilePosition here) {
+        if (stationField == null) {
+            stationField = closestField(stations);
+        }
+        return closestByGround(stations, stationField, here);
+    }
+
+    /// Returns the closest main BWEB::Station to the given TilePosition by walking distance, or null if none can be walked to.
+    public static Station getClosestMainStationByGround(TilePosition here) {
+        if (mainField == null) {
+            mainField = closestField(mains);
+        }
+        return closestByGround(mains, mainField, here);
+    }
+
+    /// Returns the closest natural BWEB::Station to the given TilePosition by walking distance, or null if none can be walked to.
+    public static Station getClosestNaturalStationByGround(TilePosition here) {
+        if (naturalField == null) {
+            naturalField = closestField(naturals);
+        }
+        return closestByGround(naturals, naturalField, here);
+    }
+
+    /// Returns the walking distance in pixels from the given TilePosition to the center of a BWEB::Station, or DBL_MAX if it can't be walked to.
+    /// The distance field of each Station is measured on first use and cached.
+    public static double getGroundDistance(Station station, TilePosition here) {
+        return stationFields.computeIfAbsent(station, s -> new GroundField(Collections.singletonList(new TilePosition(s.getBWEMBase().getCenter())))).getDistance(here);
+    }
+
+    /// Returns the BWEB::Station whose resource centroid is covered by the fewest of our static defenses, or null if there are none.
+    /// <param name="air"> Set as true to count air coverage instead of ground coverage.
+    public static Station getLeastCoveredStation(boolean air) {
+        return getLeastCoveredStation(stations, air);
+    }
+
+    /// Returns the BWEB::Station from a vector whose resource centroid is covered by the fewest of our static defenses, or null if it's empty.
+    /// <param name="candidates"> The BWEB::Stations to choose from, such as the ones we own.
+    /// <param name="air"> Set as true to count air coverage instead of ground coverage.
+    public static Station getLeastCoveredStation(List<Station> candidates, boolean air) {
+        int coverageBest = Integer.MAX_VALUE;
+        Station bestStation = null;
+        for (Station station : candidates) {
+            TilePosition tile = new TilePosition(station.getResourceCentroid());
+            int coverage = air ? JBWEB.getAirCoverage(tile) : JBWEB.getGroundCoverage(tile);
+            if (coverage < coverageBest) {
+                coverageBest = coverage;
                 bestStation = station;
             }
         }
@@ -0,0 +1,134 @@
+package jbweb;
+
+import bwapi.*;
+import bwem.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class TightnessMap {
+    // Flags stored per WalkPosition
+    static final byte TIGHT_CHECKED = 1;    // Tight with the terrain when the side is checked at the tightness resolution
+    static final byte TIGHT = 2;            // Tight with the terrain regardless of the side
+    static final byte NODE1 = 4;            // Unwalkable near the choke and closest to END1
+    static final byte NODE2 = 8;            // Unwalkable near the choke and closest to END2
+
+    // Sides of a placement, in the order tightCheck visits them
+    static final int UP = 0;
+    static final int DOWN = 1;
+    static final int LEFT = 2;
+    static final int RIGHT = 3;
+
+    private final ChokePoint choke;
+    private final UnitType tightType;
+    private final boolean requireTight, openWall;
+    private final UnitType[][] usedGrid;
+    private final int originX, originY, size;
+    private final byte[] flags;
+    private final List<UnitType> types = new ArrayList<>();
+    private final int[][] gapMasks;
+
+    /// Precomputes terrain tightness around a WalkPosition of a choke, and which wall pieces are tight against each other.
+    TightnessMap(ChokePoint _choke, WalkPosition center, int radius, UnitType _tightType, boolean _requireTight, boolean _openWall, List<UnitType> buildings, UnitType[][] _usedGrid) {
+        choke = _choke;
+        tightType = _tightType;
+        requireTight = _requireTight;
+        openWall = _openWall;
+        usedGrid = _usedGrid;
+        originX = center.x - radius;
+        originY = center.y - radius;
+        size = radius * 2 + 1;
+
+        // Terrain only changes with resources, which are never part of a wall, so the window is valid for the whole search
+        flags = new byte[size * size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                flags[x * size + y] = compute(originX + x, originY + y);
+            }
+        }
+
+        // Gaps only depend on the pair of UnitTypes and the side they touch on
+        for (UnitType building : buildings) {
+            if (!types.contains(building)) {
+                types.add(building);
+            }
+        }
+        int vertTight = (tightType == UnitType.None) ? 32 : tightType.height();
+        int horizTight = (tightType == UnitType.None) ? 32 : tightType.width();
+        gapMasks = new int[types.size()][8];
+        for (int i = 0; i < types.size(); i++) {
+            UnitType type = types.get(i);
+            int dimL = (type.tileWidth() * 16) - type.dimensionLeft();
+            int dimR = (type.tileWidth() * 16) - type.dimensionRight() - 1;
+            int dimU = (type.tileHeight() * 16) - type.dimensionUp();
+            int dimD = (type.tileHeight() * 16) - type.dimensionDown() - 1;
+
+            for (int j = 0; j < types.size(); j++) {
+                UnitType parent = types.get(j);
+                int[] gaps = {
+                        (parent.tileHeight() * 16) - parent.dimensionDown() - 1 + dimR,
+                        (parent.tileHeight() * 16) - parent.dimensionUp() + dimL,
+                        (parent.tileWidth() * 16) - parent.dimensionRight() - 1 + dimU,
+                        (parent.tileWidth() * 16) - parent.dimensionLeft() + dimD};
+
+                for (int side = 0; side < 4; side++) {
+                    int sideTight = side == UP || side == DOWN ? vertTight : horizTight;
+                    if (!requireTight || gaps[side] < sideTight) {
+                        gapMasks[i][side * 2] |= 1 << j;
+                    }
+                    if (!requireTight || (gaps[side] < vertTight && gaps[side] < horizTight)) {
+                        gapMasks[i][side * 2 + 1] |= 1 << j;
+                    }
+                }
+            }
+        }
+    }
+
+    private byte compute(int x, int y) {
+        WalkPosition w = new WalkPosition(x, y);
+        TilePosition t = new TilePosition(w);
+        boolean walkable = t.isValid(JBWEB.game) && JBWEB.isWalkable(t);
+        byte f = 0;
+
+        // If the walk position is invalid or un-walkable
+        if (tightType != UnitType.None && (!w.isValid(JBWEB.game) || !JBWEB.game.isWalkable(w))) {
+            f |= TIGHT_CHECKED;
+        }
+
+        // If we don't care about walling tight and the tile isn't walkable, or there's a mineral field or geyser here
+        if ((!requireTight && !walkable) || JBWEB.isUsed(usedGrid, t, 1, 1).isResourceContainer()) {
+            f |= TIGHT;
+        }
+
+        // Check to see which node it is closest to
+        if (!openWall && !walkable && w.getDistance(choke.getCenter()) < 4) {
+            f |= w.getDistance(choke.getNodePosition(ChokePoint.Node.END1)) < w.getDistance(choke.getNodePosition(ChokePoint.Node.END2)) ? NODE1 : NODE2;
+        }
+        return f;
+    }
+
+    /// Returns the flags of a WalkPosition, computing them directly if it falls outside the precomputed window.
+    byte get(int x, int y) {
+        int dx = x - originX;
+        int dy = y - originY;
+        if (dx < 0 || dy < 0 || dx >= size || dy >= size) {
+            return compute(x, y);
+        }
+        return flags[dx * size + dy];
+    }
+
+    /// Returns true if the flags are tight with the terrain.
+    static boolean isTerrainTight(byte f, boolean check) {
+        return (f & TIGHT) != 0 || (check && (f & TIGHT_CHECKED) != 0);
+    }
+
+    /// Returns the index of a wall piece UnitType, or -1 if it isn't part of the wall.
+    int typeIndex(UnitType type) {
+        return types.indexOf(type);
+    }
+
+    /// Returns the gap mask of wall pieces that are tight against the given piece on one side, for corners or edges.
+    int gapMask(int typeIndex, int side, boolean corner) {
+        return gapMasks[typeIndex][side * 2 + (corner ? 1 : 0)];
+    }
+}
@@ -0,0 +1,39 @@
+package jbweb;
+
+public class TranspositionTable {
+    private final long[] hashes;
+    private final double[] scores;
+    private final boolean[] used;
+    private final int mask;
+
+    /// Creates a direct mapped table of 2^bits entries, newer entries replace older ones in the same slot.
+    TranspositionTable(int bits) {
+        hashes = new long[1 << bits];
+        scores = new double[1 << bits];
+        used = new boolean[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    private int slot(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /// Returns true if a result is stored for the given layout hash.
+    boolean contains(long hash) {
+        int i = slot(hash);
+        return used[i] && hashes[i] == hash;
+    }
+
+    /// Returns the score stored for the given layout hash, NaN if the layout failed before being scored.
+    double getScore(long hash) {
+        return scores[slot(hash)];
+    }
+
+    /// Stores the score of a layout hash, NaN if the layout failed before being scored.
+    void store(long hash, double score) {
+        int i = slot(hash);
+        used[i] = true;
+        hashes[i] = hash;
+        scores[i] = score;
+    }
+}
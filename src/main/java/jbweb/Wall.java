@@ -4,6 +4,8 @@ import bwapi.*;
 import bwem.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Wall {
     private UnitType tightType;
@@ -18,16 +20,41 @@ public class Wall {
     private List<UnitType> rawBuildings;
     private List<UnitType> rawDefenses;
     private List<Area> accessibleNeighbors;
-    private HashMap<TilePosition, UnitType> currentLayout = new HashMap<>(); // IntelliJ IDEA warns incorrectly that this instantiation is unnecessary.
-    private HashMap<TilePosition, UnitType> bestLayout = new HashMap<>();
+    private WallLayout currentLayout, bestLayout;
     private Area area;
     private ChokePoint choke;
     private Base base;
     private double chokeAngle, bestWallScore, pathDist;
     private boolean pylonWall, openWall, requireTight, movedStart, pylonWallPiece, allowLifted, flatRamp;
     private Station closestStation;
+    private Position chokeNode1, chokeNode2;
+    private double[] placedUpper, placedLower;
+    private UnitType[][] usedGrid;
+    private Bitboard usedBits, reserveBits;
+    private Map<UnitType, Bitboard> depotBits = new HashMap<>();
+    private Bitboard ownReserveBits;
+    private TightnessMap tightness;
+    private ConnectivityOracle connectivity;
+    private IncrementalPath incrementalPath;
+    private TranspositionTable transpositions;
+    private List<Wall> workers = new ArrayList<>();
+    private List<List<UnitType>> chunk;
+    private int nextPermutation, resumeDeepest;
+    private int[] resumeIndex;
+    private long deadline = Long.MAX_VALUE;
+    private boolean searchComplete, timedOut, resuming;
+    private boolean scanTerrainTight, scanParentTight;
+    private int scanP1Tight, scanP2Tight;
+    private WallSearchStats stats = new WallSearchStats();
+    private final DefenseCounter defenseCounter = new DefenseCounter();
+    private boolean timeChecks;
 
     public Wall(Area _area, ChokePoint _choke, List<UnitType> _buildings, List<UnitType> _defenses, UnitType _tightType, boolean _requireTight, boolean _openWall) {
+        this(_area, _choke, _buildings, _defenses, _tightType, _requireTight, _openWall, false);
+    }
+
+    // Creates a Wall, a deferred search is run with search and completed with finish
+    Wall(Area _area, ChokePoint _choke, List<UnitType> _buildings, List<UnitType> _defenses, UnitType _tightType, boolean _requireTight, boolean _openWall, boolean deferSearch) {
         area = _area;
         choke = _choke;
         rawBuildings = _buildings;
@@ -35,9 +62,32 @@ public class Wall {
         tightType = _tightType;
         requireTight = _requireTight;
         openWall = _openWall;
+        usedGrid = JBWEB.copyUsedGrid();
+        usedBits = JBWEB.copyUsedBits();
+        reserveBits = JBWEB.copyReserveBits();
+        currentLayout = new WallLayout(rawBuildings.size());
+        bestLayout = new WallLayout(rawBuildings.size());
 
         // Create Wall layout and find basic features
         initialize();
+        prepareSearch();
+        if (!deferSearch) {
+            search(Double.MAX_VALUE);
+            finish(false);
+        }
+    }
+
+    /// Places the best layout found so far and completes the Wall with an opening and defenses.
+    /// <param name="dropTaken"> Set as true for searches that ran while the game went on, a layout that overlaps tiles taken since the search started is dropped, failing the Wall.
+    void finish(boolean dropTaken) {
+        if (dropTaken && overlapsTaken()) {
+            bestLayout.clear();
+        }
+
+        // Finishing runs on the game thread against the live grids, including anything added while searching
+        reserveBits = null;
+        usedGrid = JBWEB.copyUsedGrid();
+        usedBits = JBWEB.copyUsedBits();
         addPieces();
         currentLayout = bestLayout;
         centroid = findCentroid();
@@ -51,6 +101,52 @@ public class Wall {
         cleanup();
     }
 
+    // Creates a worker that searches permutations of the parent Wall on its own copy of the used grid
+    private Wall(Wall parent) {
+        area = parent.area;
+        choke = parent.choke;
+        base = parent.base;
+        rawBuildings = parent.rawBuildings;
+        rawDefenses = parent.rawDefenses;
+        tightType = parent.tightType;
+        requireTight = parent.requireTight;
+        openWall = parent.openWall;
+        allowLifted = parent.allowLifted;
+        timeChecks = parent.timeChecks;
+        initialPathStart = parent.initialPathStart;
+        initialPathEnd = parent.initialPathEnd;
+        pathStart = parent.pathStart;
+        pathEnd = parent.pathEnd;
+        creationStart = parent.creationStart;
+        notableLocations = parent.notableLocations;
+        accessibleNeighbors = parent.accessibleNeighbors;
+        chokeAngle = parent.chokeAngle;
+        pathDist = parent.pathDist;
+        pylonWall = parent.pylonWall;
+        pylonWallPiece = parent.pylonWallPiece;
+        movedStart = parent.movedStart;
+        flatRamp = parent.flatRamp;
+        closestStation = parent.closestStation;
+        centroid = parent.centroid;
+        opening = parent.opening;
+        chokeNode1 = parent.chokeNode1;
+        chokeNode2 = parent.chokeNode2;
+        tightness = parent.tightness;
+        reserveBits = parent.reserveBits;
+        depotBits = parent.depotBits;
+        usedBits = new Bitboard(parent.usedBits);
+        connectivity = parent.connectivity != null ? parent.connectivity.copy() : null;
+        incrementalPath = openWall ? new IncrementalPath(this) : null;
+        transpositions = new TranspositionTable(14);
+        bestWallScore = parent.bestWallScore;
+        currentLayout = new WallLayout(rawBuildings.size());
+        bestLayout = new WallLayout(rawBuildings.size());
+        usedGrid = new UnitType[256][];
+        for (int x = 0; x < 256; x++) {
+            usedGrid[x] = parent.usedGrid[x].clone();
+        }
+    }
+
     /// Returns the Chokepoint associated with this Wall.
     public ChokePoint getChokePoint() {
         return choke;
@@ -101,6 +197,11 @@ public class Wall {
         return rawDefenses;
     }
 
+    /// Returns the statistics of the search that created this Wall.
+    public WallSearchStats getStats() {
+        return stats;
+    }
+
     /// Returns true if the Wall only contains Pylons.
     public boolean isPylonWall() {
         return pylonWall;
@@ -122,8 +223,9 @@ public class Wall {
         // Create current centroid using all buildings except Pylons
         Position currentCentroid = new Position(0, 0);
         int sizeWall = rawBuildings.size();
-        for (TilePosition tile : bestLayout.keySet()) {
-            UnitType type = bestLayout.get(tile);
+        for (int i = 0; i < bestLayout.size(); i++) {
+            TilePosition tile = bestLayout.getTile(i);
+            UnitType type = bestLayout.getType(i);
             if (type != UnitType.Protoss_Pylon) {
                 currentCentroid = new Position(currentCentroid.x + tile.toPosition().x + type.tileSize().toPosition().x/2,
                         currentCentroid.y + tile.toPosition().y + type.tileSize().toPosition().y/2);
@@ -135,8 +237,9 @@ public class Wall {
         // Create a centroid if we only have a Pylon wall
         if (sizeWall == 0) {
             sizeWall = bestLayout.size();
-            for (TilePosition tile : bestLayout.keySet()) {
-                UnitType type = bestLayout.get(tile);
+            for (int i = 0; i < bestLayout.size(); i++) {
+                TilePosition tile = bestLayout.getTile(i);
+                UnitType type = bestLayout.getType(i);
                 currentCentroid = new Position(currentCentroid.x + tile.toPosition().x + type.tileSize().toPosition().x/2,
                         currentCentroid.y + tile.toPosition().y + type.tileSize().toPosition().y/2);
             }
@@ -157,16 +260,16 @@ public class Wall {
         // Check which tile is closest to each part on the path, set as opening
         double distBest = Double.MAX_VALUE;
         for (TilePosition pathTile : currentPath.getTiles()){
-            Position closestChokeGeo = JBWEB.getClosestChokeTile (choke, new Position(pathTile));
-            double dist = closestChokeGeo.getDistance(new Position(pathTile));
+            double dist = JBWEB.getChokeDistance(choke, new Position(pathTile));
             Position centerPath = new Position(pathTile.x + 16, pathTile.y + 16);
 
             boolean angleOkay = true;
             boolean distOkay = false;
 
             // Check if the angle and distance is okay
-            for (TilePosition tileLayout : currentLayout.keySet()) {
-                UnitType typeLayout = currentLayout.get(tileLayout);
+            for (int i = 0; i < currentLayout.size(); i++) {
+                TilePosition tileLayout = currentLayout.getTile(i);
+                UnitType typeLayout = currentLayout.getType(i);
                 if (typeLayout == UnitType.Protoss_Pylon) {
                     continue;
                 }
@@ -209,6 +312,7 @@ public class Wall {
         Position endCenter = new Position(pathEnd.toPosition().x + 16, pathEnd.toPosition().y + 16);
 
         // Get a new path
+        stats.addPathSearch();
         Path newPath = new Path();
         allowLifted = false;
         newPath.bfsPath(endCenter, startCenter, this);
@@ -219,58 +323,11 @@ public class Wall {
         if (type != UnitType.Protoss_Pylon || pylonWall)
             return true;
 
-        // TODO: Create a generic BWEB function that takes 2 tiles and tells you if the 1st tile will power the 2nd tile
-        for (TilePosition tileLayout : currentLayout.keySet()) {
-            UnitType typeLayout = currentLayout.get(tileLayout);
-            if (typeLayout == UnitType.Protoss_Pylon) {
-                continue;
-            }
-
-            if (typeLayout.tileWidth() == 4) {
-                boolean powersThis = false;
-                if (tileLayout.y - here.y == -5 || tileLayout.y - here.y == 4) {
-                    if (tileLayout.x - here.x >= -4 && tileLayout.x - here.x <= 1) {
-                        powersThis = true;
-                    }
-                }
-                if (tileLayout.y - here.y == -4 || tileLayout.y - here.y == 3) {
-                    if (tileLayout.x - here.x >= -7 && tileLayout.x - here.x <= 4) {
-                        powersThis = true;
-                    }
-                }
-                if (tileLayout.y - here.y == -3 || tileLayout.y - here.y == 2) {
-                    if (tileLayout.x - here.x >= -8 && tileLayout.x - here.x <= 5) {
-                        powersThis = true;
-                    }
-                }
-                if (tileLayout.y - here.y >= -2 && tileLayout.y - here.y <= 1) {
-                    if (tileLayout.x - here.x >= -8 && tileLayout.x - here.x <= 6) {
-                        powersThis = true;
-                    }
-                }
-                if (!powersThis) {
-                    return false;
-                }
-            } else {
-                boolean powersThis = false;
-                if (tileLayout.y - here.y == 4) {
-                    if (tileLayout.x - here.x >= -3 && tileLayout.x - here.x <= 2) {
-                        powersThis = true;
-                    }
-                }
-                if (tileLayout.y - here.y == -4 || tileLayout.y - here.y == 3) {
-                    if (tileLayout.x - here.x >= -6 && tileLayout.x - here.x <= 5) {
-                        powersThis = true;
-                    }
-                }
-                if (tileLayout.y - here.y >= -3 && tileLayout.y - here.y <= 2) {
-                    if (tileLayout.x - here.x >= -7 && tileLayout.x - here.x <= 6) {
-                        powersThis = true;
-                    }
-                }
-                if (!powersThis) {
-                    return false;
-                }
+        // Every building in the layout needs to be powered by this Pylon
+        for (int i = 0; i < currentLayout.size(); i++) {
+            UnitType typeLayout = currentLayout.getType(i);
+            if (typeLayout != UnitType.Protoss_Pylon && !PowerGrid.powers(here.x, here.y, currentLayout.getX(i), currentLayout.getY(i), typeLayout)) {
+                return false;
             }
         }
         return true;
@@ -286,8 +343,9 @@ public class Wall {
         }
 
         // Check if the angle is okay between all pieces in the current layout
-        for (TilePosition tileLayout : currentLayout.keySet()) {
-            UnitType typeLayout = currentLayout.get(tileLayout);
+        for (int i = 0; i < currentLayout.size(); i++) {
+            TilePosition tileLayout = currentLayout.getTile(i);
+            UnitType typeLayout = currentLayout.getType(i);
             if (typeLayout == UnitType.Protoss_Pylon)
                 continue;
 
@@ -311,8 +369,8 @@ public class Wall {
         }
 
         // Check if placement is valid
-        if (JBWEB.isReserved(here, type.tileWidth(), type.tileHeight())
-            || !JBWEB.isPlaceable(type, here)
+        if (isReserved(here, type.tileWidth(), type.tileHeight())
+            || !isPlaceable(type, here)
             || (!openWall && JBWEB.tilesWithinArea(area, here, type.tileWidth(), type.tileHeight()) == 0)
             || (openWall && JBWEB.tilesWithinArea(area, here, type.tileWidth(), type.tileHeight()) == 0 &&
                 (type == UnitType.Protoss_Pylon || (JBWEB.mapBWEM.getMap().getArea(here) != null &&
@@ -323,182 +381,97 @@ public class Wall {
         return true;
     }
 
-    // Functions for each dimension check
-    private int gapRight(UnitType parent, int dimR) {
-        return (parent.tileWidth() * 16) - parent.dimensionLeft() + dimR;
-    }
-
-    private int gapLeft(UnitType parent, int dimL) {
-        return (parent.tileWidth() * 16) - parent.dimensionRight() - 1 + dimL;
-    }
-
-    private int gapUp(UnitType parent, int dimU) {
-        return (parent.tileHeight() * 16) - parent.dimensionDown() - 1 + dimU;
-    }
-
-    private int gapDown(UnitType parent, int dimD) {
-        return (parent.tileHeight() * 16) - parent.dimensionUp() + dimD;
-    }
-
-
-    // Check if the building is terrain tight when placed here
-    private boolean terrainTightCheck(WalkPosition w, boolean check) {
-        TilePosition t = new TilePosition(w);
-
-        // If the walk position is invalid or un-walkable
-        if (tightType != UnitType.None && check && (!w.isValid(JBWEB.game) || !JBWEB.game.isWalkable(w))) {
-            return true;
-        }
-
-        // If we don't care about walling tight and the tile isn't walkable
-        if (!requireTight && !JBWEB.isWalkable(t)) {
-            return true;
+    // Returns the index of the wall piece used at a tile, or -1 if it isn't part of the wall
+    private int parentIndex(int tx, int ty) {
+        if (tx < 0 || ty < 0 || tx >= JBWEB.game.mapWidth() || ty >= JBWEB.game.mapHeight()) {
+            return -1;
         }
+        return usedGrid[tx][ty] == UnitType.None ? -1 : tightness.typeIndex(usedGrid[tx][ty]);
+    }
 
-        // If there's a mineral field or geyser here
-        if (JBWEB.isUsed(t, 1, 1).isResourceContainer()) {
-            return true;
+    // Check to see which node it is closest to (0 is don't check, 1 is not tight, 2 is tight)
+    private void checkNodes(byte f) {
+        if ((f & TightnessMap.NODE1) != 0) {
+            if (scanP1Tight == 0) {
+                scanP1Tight = 1;
+            }
+            if (scanTerrainTight) {
+                scanP1Tight = 2;
+            }
+        } else if ((f & TightnessMap.NODE2) != 0 && scanP2Tight == 0) {
+            scanP2Tight = 1;
+            if (scanTerrainTight) {
+                scanP2Tight = 2;
+            }
         }
-        return false;
-    };
-
+    }
 
     // Iterate vertical tiles adjacent of this placement
-    private List<Pair<Boolean, Integer>> checkVerticalSide(WalkPosition start, boolean check, String gap, int dim, int walkWidth,
-                                                   boolean terrainTight, boolean parentTight, int p1Tight, int p2Tight,
-                                                   boolean checkL, boolean checkR, int vertTight, int horizTight) {
-        for (int x = start.x - 1; x < start.x + walkWidth + 1; x++) {
-            WalkPosition w = new WalkPosition(x, start.y);
-            TilePosition t = new TilePosition(w);
-            UnitType parent = JBWEB.isUsed(t, 1, 1);
-            boolean leftCorner = x < start.x;
-            boolean rightCorner = x >= start.x + walkWidth;
-
-            int gapValue = 0;
-            if (gap.equals("Right")) {
-                gapValue = gapRight(parent, dim);
-            } else if (gap.equals("Left")) {
-                gapValue = gapLeft(parent, dim);
-            } else if (gap.equals("Up")) {
-                gapValue = gapUp(parent, dim);
-            } else if (gap.equals("Down")) {
-                gapValue = gapDown(parent, dim);
-            }
+    private void checkVerticalSide(int startX, int startY, boolean check, int typeIndex, int side, int walkWidth, boolean checkL, boolean checkR) {
+        int edgeMask = tightness.gapMask(typeIndex, side, false);
+        int cornerMask = tightness.gapMask(typeIndex, side, true);
+        for (int x = startX - 1; x < startX + walkWidth + 1; x++) {
+            byte f = tightness.get(x, startY);
+            int parent = parentIndex(x / 4, startY / 4);
+            boolean leftCorner = x < startX;
+            boolean rightCorner = x >= startX + walkWidth;
 
             // If this is a corner
             if (leftCorner || rightCorner) {
                 // Check if it's tight with the terrain
-                if (!terrainTight && terrainTightCheck(w, check) && leftCorner ? terrainTightCheck(w, checkL) : terrainTightCheck(w, checkR)) {
-                    terrainTight = true;
+                if (!scanTerrainTight && TightnessMap.isTerrainTight(f, check) && leftCorner ? TightnessMap.isTerrainTight(f, checkL) : TightnessMap.isTerrainTight(f, checkR)) {
+                    scanTerrainTight = true;
                 }
                 // Check if it's tight with a parent
-                if (!parentTight && rawBuildings.contains(parent) && (!requireTight || (gapValue < vertTight && (leftCorner ? gapValue < horizTight : gapValue < horizTight)))) {
-                    parentTight = true;
+                if (!scanParentTight && parent >= 0 && (cornerMask & (1 << parent)) != 0) {
+                    scanParentTight = true;
                 }
             } else {
                 // Check if it's tight with the terrain
-                if (!terrainTight && terrainTightCheck(w, check)) {
-                    terrainTight = true;
+                if (!scanTerrainTight && TightnessMap.isTerrainTight(f, check)) {
+                    scanTerrainTight = true;
                 }
                 // Check if it's tight with a parent
-                if (!parentTight && rawBuildings.contains(parent) && (!requireTight || gapValue < vertTight)) {
-                    parentTight = true;
-                }
-            }
-
-            // Check to see which node it is closest to (0 is don't check, 1 is not tight, 2 is tight)
-            if (!openWall && !JBWEB.isWalkable(t) && w.getDistance(choke.getCenter()) < 4) {
-                if (w.getDistance(choke.getNodePosition(ChokePoint.Node.END1)) < w.getDistance(choke.getNodePosition(ChokePoint.Node.END2))) {
-                    if (p1Tight == 0) {
-                        p1Tight = 1;
-                    }
-                    if (terrainTight) {
-                        p1Tight = 2;
-                    }
-                } else if (p2Tight == 0) {
-                    if (p2Tight == 0) {
-                        p2Tight = 1;
-                    }
-                    if (terrainTight) {
-                        p2Tight = 2;
-                    }
+                if (!scanParentTight && parent >= 0 && (edgeMask & (1 << parent)) != 0) {
+                    scanParentTight = true;
                 }
             }
+            checkNodes(f);
         }
-
-        List<Pair<Boolean, Integer>> checkValue = new ArrayList<>();
-        checkValue.add(new Pair<>(terrainTight, p1Tight));
-        checkValue.add(new Pair<>(parentTight, p2Tight));
-        return checkValue;
     }
 
     // Iterate horizontal tiles adjacent of this placement
-    private List<Pair<Boolean, Integer>> checkHorizontalSide(WalkPosition start, boolean check, String gap, int dim, int walkHeight,
-                                                     boolean terrainTight, boolean parentTight, int p1Tight, int p2Tight,
-                                                     boolean checkU, boolean checkD, int vertTight, int horizTight) {
-        for (int y = start.y - 1; y < start.y + walkHeight + 1; y++) {
-            WalkPosition w = new WalkPosition(start.x, y);
-            TilePosition t = new TilePosition(w);
-            UnitType parent = JBWEB.isUsed(t, 1, 1);
-            boolean topCorner = y < start.y;
-            boolean downCorner = y >= start.y + walkHeight;
-
-            int gapValue = 0;
-            if (gap.equals("Right")) {
-                gapValue = gapRight(parent, dim);
-            } else if (gap.equals("Left")) {
-                gapValue = gapLeft(parent, dim);
-            } else if (gap.equals("Up")) {
-                gapValue = gapUp(parent, dim);
-            } else if (gap.equals("Down")) {
-                gapValue = gapDown(parent, dim);
-            }
+    private void checkHorizontalSide(int startX, int startY, boolean check, int typeIndex, int side, int walkHeight, boolean checkU, boolean checkD) {
+        int edgeMask = tightness.gapMask(typeIndex, side, false);
+        int cornerMask = tightness.gapMask(typeIndex, side, true);
+        for (int y = startY - 1; y < startY + walkHeight + 1; y++) {
+            byte f = tightness.get(startX, y);
+            int parent = parentIndex(startX / 4, y / 4);
+            boolean topCorner = y < startY;
+            boolean downCorner = y >= startY + walkHeight;
 
             // If this is a corner
             if (topCorner || downCorner) {
                 // Check if it's tight with the terrain
-                if (!terrainTight && terrainTightCheck(w, check) && topCorner ? terrainTightCheck(w, checkU) : terrainTightCheck(w, checkD)) {
-                    terrainTight = true;
+                if (!scanTerrainTight && TightnessMap.isTerrainTight(f, check) && topCorner ? TightnessMap.isTerrainTight(f, checkU) : TightnessMap.isTerrainTight(f, checkD)) {
+                    scanTerrainTight = true;
                 }
                 // Check if it's tight with a parent
-                if (!parentTight && rawBuildings.contains(parent) && (!requireTight || (gapValue < horizTight && (topCorner ? gapValue < vertTight : gapValue < vertTight)))) {
-                    parentTight = true;
+                if (!scanParentTight && parent >= 0 && (cornerMask & (1 << parent)) != 0) {
+                    scanParentTight = true;
                 }
             } else {
                 // Check if it's tight with the terrain
-                if (!terrainTight && terrainTightCheck(w, check)) {
-                    terrainTight = true;
+                if (!scanTerrainTight && TightnessMap.isTerrainTight(f, check)) {
+                    scanTerrainTight = true;
                 }
                 // Check if it's tight with a parent
-                if (!parentTight && rawBuildings.contains(parent) && (!requireTight || gapValue < horizTight)) {
-                    parentTight = true;
-                }
-            }
-
-            // Check to see which node it is closest to (0 is don't check, 1 is not tight, 2 is tight)
-            if (!openWall && !JBWEB.isWalkable(t) && w.getDistance(choke.getCenter()) < 4) {
-                if (w.getDistance(choke.getNodePosition(ChokePoint.Node.END1)) < w.getDistance(choke.getNodePosition(ChokePoint.Node.END2))) {
-                    if (p1Tight == 0) {
-                        p1Tight = 1;
-                    }
-                    if (terrainTight) {
-                        p1Tight = 2;
-                    }
-                } else if (p2Tight == 0) {
-                    if (p2Tight == 0) {
-                        p2Tight = 1;
-                    }
-                    if (terrainTight) {
-                        p2Tight = 2;
-                    }
+                if (!scanParentTight && parent >= 0 && (edgeMask & (1 << parent)) != 0) {
+                    scanParentTight = true;
                 }
             }
+            checkNodes(f);
         }
-
-        List<Pair<Boolean, Integer>> checkValue = new ArrayList<>();
-        checkValue.add(new Pair<>(terrainTight, p1Tight));
-        checkValue.add(new Pair<>(parentTight, p2Tight));
-        return checkValue;
     }
 
 
@@ -532,31 +505,25 @@ public class Wall {
         int extraU = pylonWall || !requireTight ? 0 : Math.max(0, (vertTight - dimU) / 8);
         int extraD = pylonWall || !requireTight ? 0 : Math.max(0, (vertTight - dimD) / 8);
 
-        // Setup boundary WalkPositions to check for tightness
-        WalkPosition left =  new WalkPosition(here.x - (1 + extraL), here.y);
-        WalkPosition right = new WalkPosition(here.x + walkWidth + extraR, here.y);
-        WalkPosition up =  new WalkPosition(here.x, here.y - (1 + extraU));
-        WalkPosition down =  new WalkPosition(here.x, here.y + walkHeight + extraD);
-
         // Used for determining if the tightness we found is suitable
         boolean firstBuilding = currentLayout.size() == 0;
         boolean lastBuilding = currentLayout.size() == (rawBuildings.size() - 1);
-        boolean terrainTight = false;
-        boolean parentTight = false;
-        int p1Tight = 0;
-        int p2Tight = 0;
+        scanTerrainTight = false;
+        scanParentTight = false;
+        scanP1Tight = 0;
+        scanP2Tight = 0;
 
         // For each side, check if it's terrain tight or tight with any adjacent buildings
-        List<Pair<Boolean, Integer>> v;
-        v = checkVerticalSide(up, checkU, "Up", dimR, walkWidth, terrainTight, parentTight, p1Tight, p2Tight, checkL, checkR, vertTight, horizTight);
-        v = checkVerticalSide(down, checkD, "Down", dimL, walkWidth, v.get(0).getFirst(), v.get(1).getFirst(), v.get(0).getSecond(), v.get(1).getSecond(), checkL, checkR, vertTight, horizTight);
-        v = checkHorizontalSide(left, checkL, "Left", dimU, walkHeight, v.get(0).getFirst(), v.get(1).getFirst(), v.get(0).getSecond(), v.get(1).getSecond(), checkU, checkD, vertTight, horizTight);
-        v = checkHorizontalSide(right, checkR, "Right", dimD, walkHeight, v.get(0).getFirst(), v.get(1).getFirst(), v.get(0).getSecond(), v.get(1).getSecond(), checkU, checkD, vertTight, horizTight);
+        int typeIndex = tightness.typeIndex(type);
+        checkVerticalSide(here.x, here.y - (1 + extraU), checkU, typeIndex, TightnessMap.UP, walkWidth, checkL, checkR);
+        checkVerticalSide(here.x, here.y + walkHeight + extraD, checkD, typeIndex, TightnessMap.DOWN, walkWidth, checkL, checkR);
+        checkHorizontalSide(here.x - (1 + extraL), here.y, checkL, typeIndex, TightnessMap.LEFT, walkHeight, checkU, checkD);
+        checkHorizontalSide(here.x + walkWidth + extraR, here.y, checkR, typeIndex, TightnessMap.RIGHT, walkHeight, checkU, checkD);
 
-        terrainTight = v.get(0).getFirst();
-        parentTight = v.get(1).getFirst();
-        p1Tight = v.get(0).getSecond();
-        p2Tight = v.get(1).getSecond();
+        boolean terrainTight = scanTerrainTight;
+        boolean parentTight = scanParentTight;
+        int p1Tight = scanP1Tight;
+        int p2Tight = scanP2Tight;
 
         // If we want a closed wall, we need all buildings to be tight at the tightness resolution...
         if (!openWall) {
@@ -587,14 +554,30 @@ public class Wall {
         return true;
     }
 
+    // Searches read resource depot placements answered when the Wall was created, since BWAPI can only be asked on the game thread
+    private boolean isPlaceable(UnitType type, TilePosition here) {
+        if (type.isResourceDepot()) {
+            Bitboard blocked = depotBits.get(type);
+            if (blocked == null || blocked.get(here.x, here.y)) {
+                return false;
+            }
+        }
+        return JBWEB.isFootprintPlaceable(usedBits, type, here);
+    }
+
+    // Searches read the reservations captured when the Wall was created, so they can run on another thread
+    private boolean isReserved(TilePosition here, int width, int height) {
+        return reserveBits != null ? JBWEB.isReserved(reserveBits, here, width, height) : JBWEB.isReserved(here, width, height);
+    }
+
     boolean wallWalkable(TilePosition tile) {
         // Checks for any collision and inverts the return value
         if (!tile.isValid(JBWEB.game)
                 || (JBWEB.mapBWEM.getMap().getArea(tile) != null && JBWEB.mapBWEM.getMap().getArea(tile) != area
                 && accessibleNeighbors.contains(JBWEB.mapBWEM.getMap().getArea(tile)))
-            || JBWEB.isReserved(tile, 1, 1) || !JBWEB.isWalkable(tile)
-            || (allowLifted && JBWEB.isUsed(tile, 1, 1) != UnitType.Terran_Barracks && JBWEB.isUsed(tile, 1, 1) != UnitType.None)
-            || (!allowLifted && JBWEB.isUsed(tile, 1, 1) != UnitType.None && JBWEB.isUsed(tile, 1, 1) != UnitType.Zerg_Larva)
+            || isReserved(tile, 1, 1) || !JBWEB.isWalkable(tile)
+            || (allowLifted && JBWEB.isUsed(usedGrid, tile, 1, 1) != UnitType.Terran_Barracks && JBWEB.isUsed(usedGrid, tile, 1, 1) != UnitType.None)
+            || (!allowLifted && JBWEB.isUsed(usedGrid, tile, 1, 1) != UnitType.None && JBWEB.isUsed(usedGrid, tile, 1, 1) != UnitType.Zerg_Larva)
             || (openWall && (tile).getDistance(pathEnd) - 64.0 > pathDist / 32)){
             return false;
         }
@@ -602,15 +585,7 @@ public class Wall {
     }
 
     private void initialize() {
-        // Clear failed counters
-        Walls.failedPlacement = 0;
-        Walls.failedAngle = 0;
-        Walls.failedPath = 0;
-        Walls.failedTight = 0;
-        Walls.failedSpawn = 0;
-        Walls.failedPower = 0;
-        Walls.failedNotable = 0;
-        Walls.failedValid = 0;
+        timeChecks = Walls.timeChecks;
 
         // Set BWAPI::Points to invalid (default constructor is None)
         centroid = Position.Invalid;
@@ -640,6 +615,8 @@ public class Wall {
         base = !area.getBases().isEmpty() ? area.getBases().get(0) : null;
         flatRamp = JBWEB.game.isBuildable(new TilePosition(choke.getCenter()));
         closestStation = Stations.getClosestStation(new TilePosition(choke.getCenter()));
+        chokeNode1 = new Position(choke.getNodePosition(ChokePoint.Node.END1));
+        chokeNode2 = new Position(choke.getNodePosition(ChokePoint.Node.END2));
 
         // Check if a Pylon should be put in the wall to help the size of the Wall or away from the wall for protection
         Position p1 = choke.getNodePosition(ChokePoint.Node.END1).toPosition();
@@ -793,8 +770,8 @@ public class Wall {
     private boolean notValidPathPoint(TilePosition testTile) {
         return !testTile.isValid(JBWEB.game)
                 || !JBWEB.isWalkable(testTile)
-                || JBWEB.isReserved(testTile, 1, 1)
-                || JBWEB.isUsed(testTile, 1, 1) != UnitType.None;
+                || isReserved(testTile, 1, 1)
+                || JBWEB.isUsed(usedGrid, testTile, 1, 1) != UnitType.None;
     }
 
     private void checkPathPoints() {
@@ -887,128 +864,409 @@ public class Wall {
         }
 
         // Return true as the next_permutation is done
-        Walls.permutations += 1;
         return true;
     }
 
-    private void addPieces() {
-        // For each permutation, try to make a wall combination that is better than the current best
-        do {
+    // Searches each permutation of the chunk in order until the deadline, keeping the first best layout found.
+    // A permutation that runs out of time resumes from the candidate it stopped at on the next call.
+    private boolean searchChunk(long _deadline) {
+        if (placedUpper == null) {
+            placedUpper = new double[rawBuildings.size() + 1];
+            placedLower = new double[rawBuildings.size() + 1];
+            resumeIndex = new int[rawBuildings.size() + 1];
+        }
+        deadline = _deadline;
+        timedOut = false;
+        while (nextPermutation < chunk.size()) {
+            rawBuildings = chunk.get(nextPermutation);
             currentLayout.clear();
             typeIterator = rawBuildings.listIterator();
             addNextPiece(creationStart);
+            if (timedOut) {
+                resuming = true;
+                return false;
+            }
+            resuming = false;
+            nextPermutation++;
+        }
+        return true;
+    }
+
+    private void prepareSearch() {
+        // Terrain tightness around the choke is shared read only by every worker
+        tightness = new TightnessMap(choke, new WalkPosition(creationStart.x, creationStart.y), 48, tightType, requireTight, openWall, rawBuildings, usedGrid);
+
+        // Answer where resource depots can be built for every TilePosition a piece can be placed at, searches may run on other threads
+        int reach = 8 + 4 * rawBuildings.size();
+        for (UnitType type : rawBuildings) {
+            if (!type.isResourceDepot() || depotBits.containsKey(type)) {
+                continue;
+            }
+            Bitboard blocked = new Bitboard(JBWEB.game.mapWidth(), JBWEB.game.mapHeight());
+            blocked.set(0, 0, blocked.width(), blocked.height());
+            for (int x = Math.max(0, creationStart.x - reach); x < Math.min(blocked.width(), creationStart.x + reach); x++) {
+                for (int y = Math.max(0, creationStart.y - reach); y < Math.min(blocked.height(), creationStart.y + reach); y++) {
+                    if (JBWEB.game.canBuildHere(new TilePosition(x, y), type)) {
+                        blocked.clear(x, y, 1, 1);
+                    }
+                }
+            }
+            depotBits.put(type, blocked);
+        }
+
+        // Closed walls only need to know if the path out is cut, which the connectivity oracle answers without a BFS
+        if (!openWall) {
+            allowLifted = false;
+            connectivity = new ConnectivityOracle(this, creationStart, 32);
+        }
+
+        // Gather every permutation up front so they can be split between workers
+        List<List<UnitType>> permutations = new ArrayList<>();
+        do {
+            permutations.add(new ArrayList<>(rawBuildings));
         } while (JBWEB.game.self().getRace() == Race.Zerg
             ? nextPermutationRawBuildings(rawBuildings.indexOf(UnitType.Zerg_Hatchery), rawBuildings.size()-1)
             : nextPermutationRawBuildings(0, rawBuildings.indexOf(UnitType.Protoss_Pylon)));
+        stats.setPermutations(permutations.size());
+
+        // Split permutations into contiguous chunks, each searched by a worker with its own used grid
+        int chunks = Walls.parallelSearch ? Math.min(permutations.size(), ForkJoinPool.commonPool().getParallelism()) : 1;
+        for (int c = 0; c < chunks; c++) {
+            Wall worker = new Wall(this);
+            worker.chunk = permutations.subList(c * permutations.size() / chunks, (c + 1) * permutations.size() / chunks);
+            workers.add(worker);
+        }
+    }
 
-        for (TilePosition tile : bestLayout.keySet()) {
-            UnitType type = bestLayout.get(tile);
+    /// Searches for up to the given amount of milliseconds. Returns true once every permutation has been searched.
+    boolean search(double timeLimit) {
+        if (searchComplete) {
+            return true;
+        }
+
+        long searchStart = System.nanoTime();
+        long until = timeLimit >= Long.MAX_VALUE / 1000000.0 ? Long.MAX_VALUE : System.nanoTime() + (long) (timeLimit * 1000000.0);
+        if (workers.size() > 1) {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (Wall worker : workers) {
+                tasks.add(ForkJoinTask.adapt(() -> worker.searchComplete = worker.searchChunk(until)));
+            }
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            workers.get(0).searchComplete = workers.get(0).searchChunk(until);
+        }
+
+        searchComplete = true;
+        for (Wall worker : workers) {
+            searchComplete = searchComplete && worker.searchComplete;
+        }
+        stats.addSearchTime(System.nanoTime() - searchStart);
+        return searchComplete;
+    }
+
+    /// Returns true if every permutation was searched, false if the Wall was finished with the best layout found within a time limit.
+    public boolean isSearchComplete() {
+        return searchComplete;
+    }
+
+    private void reduceWorkers() {
+        // Reduce in permutation order, an earlier chunk keeps ties the same as a sequential search would
+        for (Wall worker : workers) {
+            stats.merge(worker.stats);
+            if (worker.bestWallScore > bestWallScore) {
+                bestWallScore = worker.bestWallScore;
+                bestLayout = worker.bestLayout;
+            }
+        }
+        workers.clear();
+    }
+
+    /// Returns true if the best layout found so far overlaps tiles that were reserved or used since the search started.
+    boolean overlapsTaken() {
+        reduceWorkers();
+        if (reserveBits == null) {
+            return false;
+        }
+        for (int i = 0; i < bestLayout.size(); i++) {
+            TilePosition tile = bestLayout.getTile(i);
+            UnitType type = bestLayout.getType(i);
+            if (JBWEB.isUsed(tile, type.tileWidth(), type.tileHeight()) != UnitType.None) {
+                return true;
+            }
+
+            // Pieces may sit on reservations that existed when searching started, such as Pylons on station defenses
+            for (int x = tile.x; x < tile.x + type.tileWidth(); x++) {
+                for (int y = tile.y; y < tile.y + type.tileHeight(); y++) {
+                    TilePosition t = new TilePosition(x, y);
+                    if (JBWEB.isReserved(t, 1, 1) && !JBWEB.isReserved(reserveBits, t, 1, 1)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void addPieces() {
+        reduceWorkers();
+
+        for (int i = 0; i < bestLayout.size(); i++) {
+            TilePosition tile = bestLayout.getTile(i);
+            UnitType type = bestLayout.getType(i);
             addToWallPieces(tile, type);
-            JBWEB.addReserve(tile, type.tileWidth(), type.tileHeight());
-            JBWEB.addUsed(tile, type);
+            reserve(tile, type.tileWidth(), type.tileHeight());
+            JBWEB.addUsed(usedGrid, usedBits, tile, type);
         }
     }
 
+    // Sign of a piece in the wall score, Pylons that only power the wall are scored for being far from the choke
+    private double scoreSign(UnitType type) {
+        return (type == UnitType.Protoss_Pylon && !pylonWall && !pylonWallPiece) ? -1.0 : 1.0;
+    }
+
+    // Smallest distance from either choke node to the center of the type placed anywhere within a range of TilePositions
+    private double minChokeDist(UnitType type, int x1, int y1, int x2, int y2) {
+        return Math.min(minNodeDist(chokeNode1, type, x1, y1, x2, y2), minNodeDist(chokeNode2, type, x1, y1, x2, y2));
+    }
+
+    private double minNodeDist(Position node, UnitType type, int x1, int y1, int x2, int y2) {
+        int cx = Math.max(x1 * 32 + type.tileWidth() * 16, Math.min(x2 * 32 + type.tileWidth() * 16, node.x));
+        int cy = Math.max(y1 * 32 + type.tileHeight() * 16, Math.min(y2 * 32 + type.tileHeight() * 16, node.y));
+        return Math.sqrt((double) (cx - node.x) * (cx - node.x) + (double) (cy - node.y) * (cy - node.y));
+    }
+
+    // Largest distance from either choke node to the center of the type placed anywhere within a range of TilePositions
+    private double maxChokeDist(UnitType type, int x1, int y1, int x2, int y2) {
+        return Math.max(maxNodeDist(chokeNode1, type, x1, y1, x2, y2), maxNodeDist(chokeNode2, type, x1, y1, x2, y2));
+    }
+
+    private double maxNodeDist(Position node, UnitType type, int x1, int y1, int x2, int y2) {
+        int dx = Math.max(Math.abs(x1 * 32 + type.tileWidth() * 16 - node.x), Math.abs(x2 * 32 + type.tileWidth() * 16 - node.x));
+        int dy = Math.max(Math.abs(y1 * 32 + type.tileHeight() * 16 - node.y), Math.abs(y2 * 32 + type.tileHeight() * 16 - node.y));
+        return Math.sqrt((double) dx * dx + (double) dy * dy);
+    }
+
+    // Stores the bound on the score terms of every piece placed so far, including this one
+    private void boundPiece(int depth, UnitType type, TilePosition here) {
+        double sign = scoreSign(type);
+        double min = minChokeDist(type, here.x, here.y, here.x, here.y);
+        double max = maxChokeDist(type, here.x, here.y, here.x, here.y);
+        placedUpper[depth + 1] = placedUpper[depth] + (sign > 0 ? max : -min);
+        placedLower[depth + 1] = placedLower[depth] + (sign > 0 ? min : -max);
+    }
+
+    // Returns true if no layout that places this piece here can score better than the best wall so far.
+    // Remaining pieces are bounded by every TilePosition the recursion could still place them at.
+    private boolean cannotBeatBest(int depth, TilePosition start, TilePosition here) {
+        if (bestWallScore <= 0.0) {
+            return false;
+        }
+
+        double upper = 1.0 + placedUpper[depth + 1];
+        double lower = 1.0 + placedLower[depth + 1];
+        for (int m = depth + 1; m < rawBuildings.size(); m++) {
+            UnitType type = rawBuildings.get(m);
+            int k = m - depth;
+            int x1 = openWall ? start.x - 8 : here.x - 4 * k;
+            int y1 = openWall ? start.y - 8 : here.y - 4 * k;
+            int x2 = openWall ? start.x + 7 : here.x + 3 * k;
+            int y2 = openWall ? start.y + 7 : here.y + 3 * k;
+            double min = minChokeDist(type, x1, y1, x2, y2);
+            double max = maxChokeDist(type, x1, y1, x2, y2);
+            if (scoreSign(type) > 0) {
+                upper += max;
+                lower += min;
+            } else {
+                upper -= min;
+                lower -= max;
+            }
+        }
+
+        // Closed walls maximize the distance, open walls minimize it
+        if (!openWall) {
+            return upper + 1e-6 <= bestWallScore;
+        }
+        return lower > 0.0 && 1.0 / lower <= bestWallScore * (1.0 - 1e-9);
+    }
+
+    // Adds the time since the last lap to a check while timing checks, returns the start of the next lap
+    private long lap(WallSearchStats.Check check, long since) {
+        if (!timeChecks) {
+            return 0L;
+        }
+        long now = System.nanoTime();
+        stats.time(check, now - since);
+        return now;
+    }
+
+    private void reject(WallSearchStats.Check check, long since) {
+        stats.reject(check);
+        lap(check, since);
+    }
+
     private void addNextPiece(TilePosition start) {
         boolean isFirstPiece = typeIterator.nextIndex() == 0;
+        int depth = typeIterator.nextIndex();
 
         // Get the value without incrementing
         UnitType type = typeIterator.next();
         typeIterator.previous();
         int radius = (openWall || isFirstPiece) ? 8 : 4;
+        int side = radius * 2;
 
-        for (int x = start.x - radius; x < start.x + radius; x++) {
-            for (int y = start.y - radius; y < start.y + radius; y++) {
-                TilePosition tile = new TilePosition(x, y);
-                Walls.totalEvaluated++;
-                Walls.minXEvaluated = Math.min(Walls.minXEvaluated, x);
-                Walls.minYEvaluated = Math.min(Walls.minYEvaluated, y);
-                Walls.maxXEvaluated = Math.max(Walls.maxXEvaluated, x);
-                Walls.maxYEvaluated = Math.max(Walls.maxYEvaluated, y);
-
-                if (!tile.isValid(JBWEB.game)) {
-                    Walls.failedValid++;
-                    continue;
-                }
+        // Pick up where a search that ran out of time stopped, the deepest stop point resumes normally from there
+        int first = resuming ? resumeIndex[depth] : 0;
+        if (resuming && depth == resumeDeepest) {
+            resuming = false;
+        }
 
-                Position center = tile.toPosition().add(new Position(type.tileWidth()*16, type.tileHeight()*16));
-                Position closestGeo = JBWEB.getClosestChokeTile(choke, center);
+        for (int k = first; k < side * side; k++) {
+            int x = start.x - radius + k / side;
+            int y = start.y - radius + k % side;
+            if (resuming && k != first) {
+                resuming = false;
+            }
 
-                // Open walls need to be placed within proximity of notable features
-                if (openWall) {
-                    Position closestNotable = Position.Invalid;
-                    double closestNotableDist = Double.MAX_VALUE;
-                    for (Position pos : notableLocations) {
-                        double dist = pos.getDistance(center);
-                        if (dist < closestNotableDist) {
-                            closestNotable = pos;
-                            closestNotableDist = dist;
-                        }
-                    }
-                    if (center.getDistance(closestNotable) >= 256.0 || center.getDistance(closestNotable) >= closestGeo.getDistance(closestNotable) + 48.0) {
-                        Walls.failedNotable++;
-                        //continue;
-                    }
-                }
+            // Candidates can cost a path repair each, so the clock is read every time, except while placing the resumed prefix again
+            if (!resuming && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+                timedOut = true;
+                resumeIndex[depth] = k;
+                resumeDeepest = depth;
+                return;
+            }
 
-                // Try not to seal the wall poorly
-                if (!openWall && flatRamp) {
-                    double m1 = Math.min(new Position(tile).getDistance(new Position(choke.getCenter())),
-                            new Position(new TilePosition(tile.toPosition().x + type.tileWidth(), tile.toPosition().y)).getDistance(new Position(choke.getCenter())));
-                    double m2 = Math.min(new Position(new TilePosition(tile.toPosition().x, tile.toPosition().y + type.tileHeight())).getDistance(new Position(choke.getCenter())),
-                            new Position(new TilePosition(tile.toPosition().x + type.tileWidth(), tile.toPosition().y + type.tileHeight())).getDistance(new Position(choke.getCenter())));
-                    double dist = Math.min(m1, m2);
-                    if (dist < 64.0) {
-                        Walls.failedSeal++;
-                        continue;
-                    }
-                }
+            TilePosition tile = new TilePosition(x, y);
+            if (!resuming) {
+                stats.evaluate(x, y);
+            }
+            long lap = timeChecks ? System.nanoTime() : 0L;
 
-                // Required checks for this wall to be valid
-                if (!powerCheck(type, tile)) {
-                    Walls.failedPower++;
-                    continue;
-                }
-                if (!angleCheck(type, tile)) {
-                    Walls.failedAngle++;
+            if (!tile.isValid(JBWEB.game)) {
+                reject(WallSearchStats.Check.Valid, lap);
+                continue;
+            }
+            lap = lap(WallSearchStats.Check.Valid, lap);
+
+            // Skip placements that can't lead to a better wall than the best so far
+            boundPiece(depth, type, tile);
+            if (cannotBeatBest(depth, start, tile)) {
+                reject(WallSearchStats.Check.Bound, lap);
+                continue;
+            }
+            lap = lap(WallSearchStats.Check.Bound, lap);
+
+            // The last piece of a closed wall has to seal it, skip it if it can't block anything the path out reaches
+            if (connectivity != null && depth == rawBuildings.size() - 1) {
+                checkPathPoints();
+                if (connectivity.cannotSeal(pathEnd, pathStart, tile, type.tileWidth(), type.tileHeight())) {
+                    reject(WallSearchStats.Check.Path, lap);
                     continue;
                 }
-                if (!placeCheck(type, tile)) {
-                    Walls.failedPlacement++;
-                    continue;
+                lap = lap(WallSearchStats.Check.Path, lap);
+            }
+
+            Position center = tile.toPosition().add(new Position(type.tileWidth()*16, type.tileHeight()*16));
+
+            // Open walls need to be placed within proximity of notable features
+            if (openWall) {
+                Position closestGeo = JBWEB.getClosestChokeTile(choke, center);
+                Position closestNotable = Position.Invalid;
+                double closestNotableDist = Double.MAX_VALUE;
+                for (Position pos : notableLocations) {
+                    double dist = pos.getDistance(center);
+                    if (dist < closestNotableDist) {
+                        closestNotable = pos;
+                        closestNotableDist = dist;
+                    }
                 }
-                if (!tightCheck(type, tile)) {
-                    Walls.failedTight++;
-                    continue;
+                if (center.getDistance(closestNotable) >= 256.0 || center.getDistance(closestNotable) >= closestGeo.getDistance(closestNotable) + 48.0) {
+                    stats.reject(WallSearchStats.Check.Notable);
+                    //continue;
                 }
-                if (!spawnCheck(type, tile)) {
-                    Walls.failedSpawn++;
+                lap = lap(WallSearchStats.Check.Notable, lap);
+            }
+
+            // Try not to seal the wall poorly
+            if (!openWall && flatRamp) {
+                double m1 = Math.min(new Position(tile).getDistance(new Position(choke.getCenter())),
+                        new Position(new TilePosition(tile.toPosition().x + type.tileWidth(), tile.toPosition().y)).getDistance(new Position(choke.getCenter())));
+                double m2 = Math.min(new Position(new TilePosition(tile.toPosition().x, tile.toPosition().y + type.tileHeight())).getDistance(new Position(choke.getCenter())),
+                        new Position(new TilePosition(tile.toPosition().x + type.tileWidth(), tile.toPosition().y + type.tileHeight())).getDistance(new Position(choke.getCenter())));
+                double dist = Math.min(m1, m2);
+                if (dist < 64.0) {
+                    reject(WallSearchStats.Check.Seal, lap);
                     continue;
                 }
+                lap = lap(WallSearchStats.Check.Seal, lap);
+            }
 
-                // 1) Store the current type, increase the iterator
-                currentLayout.put(tile, type);
-                JBWEB.addUsed(tile, type);
-                typeIterator.next();
+            // Required checks for this wall to be valid
+            if (!powerCheck(type, tile)) {
+                reject(WallSearchStats.Check.Power, lap);
+                continue;
+            }
+            lap = lap(WallSearchStats.Check.Power, lap);
+            if (!angleCheck(type, tile)) {
+                reject(WallSearchStats.Check.Angle, lap);
+                continue;
+            }
+            lap = lap(WallSearchStats.Check.Angle, lap);
+            if (!placeCheck(type, tile)) {
+                reject(WallSearchStats.Check.Placement, lap);
+                continue;
+            }
+            lap = lap(WallSearchStats.Check.Placement, lap);
+            if (!tightCheck(type, tile)) {
+                reject(WallSearchStats.Check.Tight, lap);
+                continue;
+            }
+            lap = lap(WallSearchStats.Check.Tight, lap);
+            if (!spawnCheck(type, tile)) {
+                reject(WallSearchStats.Check.Spawn, lap);
+                continue;
+            }
+            lap(WallSearchStats.Check.Spawn, lap);
+
+            // 1) Store the current type, increase the iterator
+            currentLayout.add(tile, type);
+            JBWEB.addUsed(usedGrid, usedBits, tile, type);
+            if (connectivity != null) {
+                connectivity.place(tile, type.tileWidth(), type.tileHeight());
+            }
+            if (incrementalPath != null) {
+                incrementalPath.update(tile, type.tileWidth(), type.tileHeight());
+            }
+            typeIterator.next();
 
-                // 2) If at the end, score wall
-                if (!typeIterator.hasNext()) {
-                    scoreWall();
+            // 2) If at the end, score wall
+            if (!typeIterator.hasNext()) {
+                scoreWall();
+            } else {
+                if (openWall) {
+                    addNextPiece(start);
                 } else {
-                    if (openWall) {
-                        addNextPiece(start);
-                    } else {
-                        addNextPiece(tile);
-                    }
+                    addNextPiece(tile);
                 }
+            }
 
-                // 3) Erase this current placement and repeat
-                if (typeIterator.nextIndex() > 0) {
-                    typeIterator.previous();
-                }
+            // 3) Erase this current placement and repeat
+            if (typeIterator.nextIndex() > 0) {
+                typeIterator.previous();
+            }
+
+            currentLayout.remove(tile);
+            JBWEB.removeUsed(usedGrid, usedBits, tile, type.tileWidth(), type.tileHeight());
+            if (connectivity != null) {
+                connectivity.remove(tile, type.tileWidth(), type.tileHeight());
+            }
+            if (incrementalPath != null) {
+                incrementalPath.update(tile, type.tileWidth(), type.tileHeight());
+            }
 
-                currentLayout.remove(tile);
-                JBWEB.removeUsed(tile, type.tileWidth(), type.tileHeight());
+            // Unwind when out of time, remembering this candidate so it's placed again when resuming
+            if (timedOut) {
+                resumeIndex[depth] = k;
+                return;
             }
         }
     }
@@ -1023,8 +1281,7 @@ public class Wall {
         double furthest = 0.0;
         for (TilePosition tile : largeTiles) {
             Position center = new Position(tile.toPosition().x + 64, tile.toPosition().y + 48);
-            Position closestGeo = JBWEB.getClosestChokeTile(choke, center);
-            double dist = center.getDistance(closestGeo);
+            double dist = JBWEB.getChokeDistance(choke, center);
             if (dist > furthest) {
                 furthest = dist;
             }
@@ -1032,8 +1289,7 @@ public class Wall {
 
         for (TilePosition tile : mediumTiles) {
             Position center = new Position(tile.toPosition().x + 48, tile.toPosition().y + 32);
-            Position closestGeo = JBWEB.getClosestChokeTile(choke, center);
-            double dist = center.getDistance(closestGeo);
+            double dist = JBWEB.getChokeDistance(choke, center);
             if (dist > furthest) {
                 furthest = dist;
             }
@@ -1043,64 +1299,86 @@ public class Wall {
         if (pylonWall) {
             for (TilePosition tile : smallTiles) {
                 Position center = new Position(tile.toPosition().x + 32, tile.toPosition().y + 32);
-                Position closestGeo = JBWEB.getClosestChokeTile(choke, center);
-                double dist = center.getDistance(closestGeo);
+                double dist = JBWEB.getChokeDistance(choke, center);
                 if (dist > furthest)
                     furthest = dist;
             }
         }
 
         Station closestStation = Stations.getClosestStation(new TilePosition(choke.getCenter()));
+        TilePosition start = new TilePosition(centroid);
+        Position openingCenter = new Position(opening.toPosition().x + 16, opening.toPosition().y + 16);
+        double arbitraryCloseMetric = JBWEB.game.self().getRace() == Race.Zerg ? 32.0 : 160.0;
+
+        // Score every tile around the wall centroid once per defense size, tiles that can never be used are left out.
+        // Reservations only grow while defenses are placed and paths only get longer, so a tile that fails stays failed.
+        Map<UnitType, PriorityQueue<Integer>> candidates = new HashMap<>();
         for (UnitType building : rawDefenses) {
-            TilePosition start = new TilePosition(centroid);
-            int width = building.tileWidth() * 32;
-            int height = building.tileHeight() * 32;
-            Position openingCenter = new Position(opening.toPosition().x + 16, opening.toPosition().y + 16);
-            double arbitraryCloseMetric = JBWEB.game.self().getRace() == Race.Zerg ? 32.0 : 160.0;
-
-            // Iterate around wall centroid to find a suitable position
-            double scoreBest = Double.MAX_VALUE;
-            TilePosition tileBest = TilePosition.Invalid;
-            for (int x = start.x - 12; x <= start.x + 12; x++) {
-                for (int y = start.y - 12; y <= start.y + 12; y++) {
-                    TilePosition t = new TilePosition(x, y);
-                    Position center = new Position(t.toPosition().x + width/2, t.toPosition().y + height/2);
-                    Position closestGeo = JBWEB.getClosestChokeTile(choke, center);
-                    boolean overlapsDefense = closestStation != null && closestStation.getDefenseLocations().contains(t) && defenses.contains(t);
-
-                    double dist = center.getDistance(closestGeo);
-                    boolean tooClose = dist < furthest || center.getDistance(openingCenter) < arbitraryCloseMetric;
-                    boolean tooFar = center.getDistance(centroid) > 200.0;
-
-                    if (!overlapsDefense) {
-                        if (!t.isValid(JBWEB.game)
-                            || JBWEB.isReserved(t, building.tileWidth(), building.tileHeight())
-                            || !JBWEB.isPlaceable(building, t)
-                            || JBWEB.tilesWithinArea(area, t, building.tileWidth(), building.tileHeight()) == 0
-                            || tooClose
-                            || tooFar){
-                            continue;
-                        }
-                    }
+            UnitType size = defenseSize(building);
+            if (candidates.containsKey(size)) {
+                continue;
+            }
+            double[] field = new double[25 * 25];
+            PriorityQueue<Integer> queue = new PriorityQueue<>((i, j) -> field[i] != field[j] ? Double.compare(field[i], field[j]) : Integer.compare(i, j));
+            for (int i = 0; i < field.length; i++) {
+                TilePosition t = new TilePosition(start.x - 12 + i / 25, start.y - 12 + i % 25);
+                Position center = defenseCenter(t, size);
+                double dist = JBWEB.getChokeDistance(choke, center);
+                field[i] = dist + center.getDistance(openingCenter);
+
+                boolean tooClose = dist < furthest || center.getDistance(openingCenter) < arbitraryCloseMetric;
+                boolean tooFar = center.getDistance(centroid) > 200.0;
+                if (t.isValid(JBWEB.game)
+                    && !isReserved(t, size.tileWidth(), size.tileHeight())
+                    && JBWEB.isPlaceable(usedBits, size, t)
+                    && JBWEB.tilesWithinArea(area, t, size.tileWidth(), size.tileHeight()) != 0
+                    && !tooClose
+                    && !tooFar) {
+                    queue.add(i);
+                }
+            }
+            candidates.put(size, queue);
+        }
 
-                    double score = dist + center.getDistance(openingCenter);
+        for (UnitType building : rawDefenses) {
+            UnitType size = defenseSize(building);
+            PriorityQueue<Integer> queue = candidates.get(size);
 
-                    if (score < scoreBest) {
-                        JBWEB.addUsed(t, building);
-                        Path pathOut = findPathOut();
-                        if (!openWall || pathOut.isReachable()) {
-                            tileBest = t;
-                            scoreBest = score;
-                        }
-                        JBWEB.removeUsed(t, building.tileWidth(), building.tileHeight());
+            // Take the best scoring tile that is still open, the first one scanned wins a tie
+            TilePosition tileBest = TilePosition.Invalid;
+            while (!queue.isEmpty()) {
+                int i = queue.poll();
+                TilePosition t = new TilePosition(start.x - 12 + i / 25, start.y - 12 + i % 25);
+                boolean overlapsDefense = closestStation != null && closestStation.getDefenseLocations().contains(t) && defenses.contains(t);
+                if (!overlapsDefense && isReserved(t, building.tileWidth(), building.tileHeight())) {
+                    continue;
+                }
+
+                // Only open walls need to keep a path out
+                if (openWall) {
+                    JBWEB.addUsed(usedGrid, usedBits, t, building);
+                    boolean reachable = findPathOut().isReachable();
+                    JBWEB.removeUsed(usedGrid, usedBits, t, building.tileWidth(), building.tileHeight());
+                    if (!reachable) {
+                        continue;
                     }
                 }
+                tileBest = t;
+                break;
             }
 
             // If tile is valid, add to wall
             if (tileBest.isValid(JBWEB.game)) {
                 defenses.add(tileBest);
-                JBWEB.addReserve(tileBest, building.tileWidth(), building.tileHeight());
+                reserve(tileBest, building.tileWidth(), building.tileHeight());
+
+                // A station defense location used by the wall stays available to the remaining defenses
+                if (closestStation != null && closestStation.getDefenseLocations().contains(tileBest)) {
+                    int i = (tileBest.x - start.x + 12) * 25 + (tileBest.y - start.y + 12);
+                    for (PriorityQueue<Integer> other : candidates.values()) {
+                        other.add(i);
+                    }
+                }
             }
 
             // Otherwise we can't place anymore
@@ -1110,23 +1388,63 @@ public class Wall {
         }
     }
 
+    // Defenses that are placed the same way share a score field, the first one of each kind in rawDefenses represents it
+    private UnitType defenseSize(UnitType building) {
+        for (UnitType defense : rawDefenses) {
+            if (defense.tileWidth() == building.tileWidth() && defense.tileHeight() == building.tileHeight()
+                    && defense.requiresCreep() == building.requiresCreep() && defense.isResourceDepot() == building.isResourceDepot()) {
+                return defense;
+            }
+        }
+        return building;
+    }
+
+    private Position defenseCenter(TilePosition here, UnitType type) {
+        return new Position(here.toPosition().x + type.tileWidth() * 16, here.toPosition().y + type.tileHeight() * 16);
+    }
+
     private void scoreWall() {
-        // Create a path searching for an opening
-        Path pathOut = findPathOut();
+        // Layouts reached through a different permutation or placement order have already been scored
+        long hash = currentLayout.getHash();
+        if (transpositions.contains(hash)) {
+            stats.addTranspositionHit();
+            double score = transpositions.getScore(hash);
+            if (score > bestWallScore) {
+                bestLayout.copyFrom(currentLayout);
+                bestWallScore = score;
+            }
+            return;
+        }
+
+        // Create a path searching for an opening, closed walls ask the connectivity oracle when it covers the path points
+        // and open walls repair the path kept alive across the search
+        boolean reachable;
+        long lap = timeChecks ? System.nanoTime() : 0L;
+        checkPathPoints();
+        if (connectivity != null && connectivity.covers(pathEnd, pathStart)) {
+            reachable = connectivity.isConnected(pathEnd, pathStart);
+        } else if (incrementalPath != null) {
+            reachable = incrementalPath.getDistance(pathEnd, pathStart) >= 0;
+        } else {
+            reachable = findPathOut().isReachable();
+        }
 
         // If we want an open wall and it's not reachable, or we want a closed wall and it is reachable
-        if ((openWall && !pathOut.isReachable()) || (!openWall && pathOut.isReachable())) {
-            Walls.failedPath++;
+        if ((openWall && !reachable) || (!openWall && reachable)) {
+            reject(WallSearchStats.Check.Path, lap);
+            transpositions.store(hash, Double.NaN);
             return;
         }
+        lap(WallSearchStats.Check.Path, lap);
 
         // Find distance for each piece to the closest choke tile to the path start point
         double dist = 1.0;
         Position optimalChokeTile = pathStart.getDistance(new TilePosition(choke.getNodePosition(ChokePoint.Node.END1))) <
                 pathStart.getDistance(new TilePosition(choke.getNodePosition(ChokePoint.Node.END2))) ?
                 new Position(choke.getNodePosition(ChokePoint.Node.END1)) : new Position(choke.getNodePosition(ChokePoint.Node.END2));
-        for (TilePosition tile : currentLayout.keySet()) {
-            UnitType type = currentLayout.get(tile);
+        for (int i = 0; i < currentLayout.size(); i++) {
+            TilePosition tile = currentLayout.getTile(i);
+            UnitType type = currentLayout.getType(i);
             Position center = new Position(tile.toPosition().x + type.tileWidth()*16, tile.toPosition().y + type.tileHeight()*16);
             double chokeDist = optimalChokeTile.getDistance(center);
             if (type == UnitType.Protoss_Pylon && !pylonWall && !pylonWallPiece) {
@@ -1136,14 +1454,11 @@ public class Wall {
             }
         }
 
-        // Calculate current centroid if a closed wall
-        Position currentCentroid = findCentroid();
-        Position currentOpening = new Position(findOpening().toPosition().x + 16, findOpening().toPosition().y + 16);
-
         // Score wall and store if better than current best layout
         double score = !openWall ? dist : 1.0 / dist;
+        transpositions.store(hash, score);
         if (score > bestWallScore) {
-            bestLayout = currentLayout;
+            bestLayout.copyFrom(currentLayout);
             bestWallScore = score;
         }
     }
@@ -1153,53 +1468,64 @@ public class Wall {
         if (openWall && !bestLayout.isEmpty()) {
             Path currentPath = findPathOut();
             for (TilePosition tile : currentPath.getTiles()) {
-                JBWEB.addReserve (tile, 1, 1);
+                reserve(tile, 1, 1);
             }
         }
 
-        // Remove used from tiles
-        for (TilePosition tile : smallTiles){
-            JBWEB.removeUsed (tile, 2, 2);
+        // The wall was only ever placed on our copy of the used grid, release it along with the search structures
+        usedGrid = null;
+        connectivity = null;
+        incrementalPath = null;
+    }
+
+    // Reserves tiles on the live grid, remembering the ones this Wall was the first to reserve
+    private void reserve(TilePosition here, int width, int height) {
+        if (ownReserveBits == null) {
+            ownReserveBits = new Bitboard(JBWEB.game.mapWidth(), JBWEB.game.mapHeight());
         }
-        for (TilePosition tile : mediumTiles){
-            JBWEB.removeUsed (tile, 3, 2);
+        for (int x = here.x; x < here.x + width; x++) {
+            for (int y = here.y; y < here.y + height; y++) {
+                if (!JBWEB.isReserved(new TilePosition(x, y), 1, 1)) {
+                    ownReserveBits.set(x, y);
+                }
+            }
         }
-        for (TilePosition tile : largeTiles){
-            JBWEB.removeUsed (tile, 4, 3);
+        JBWEB.addReserve(here, width, height);
+    }
+
+    /// Gives back the tiles this Wall reserved, called when another Wall replaces it.
+    void release() {
+        if (ownReserveBits == null) {
+            return;
         }
-        for (TilePosition tile : defenses){
-            JBWEB.removeUsed (tile, 2, 2);
+        for (int x = 0; x < ownReserveBits.width(); x++) {
+            for (int y = 0; y < ownReserveBits.height(); y++) {
+                if (ownReserveBits.get(x, y)) {
+                    JBWEB.removeReserve(new TilePosition(x, y), 1, 1);
+                }
+            }
         }
+        ownReserveBits = null;
     }
 
     /// Returns the number of ground defenses associated with this Wall.
     public int getGroundDefenseCount() {
-        // Returns how many visible ground defensive structures exist in this Walls defense locations
-        int count = 0;
-        for (TilePosition defense : defenses) {
-            UnitType type = JBWEB.isUsed(defense, 1, 1);
-            if (type == UnitType.Protoss_Photon_Cannon
-                    || type == UnitType.Zerg_Sunken_Colony
-                    || type == UnitType.Terran_Bunker) {
-                count++;
-            }
-        }
-        return count;
+        return defenseCounter.getGround();
     }
 
     /// Returns the number of air defenses associated with this Wall.
     public int getAirDefenseCount() {
-        // Returns how many visible air defensive structures exist in this Walls defense locations
-        int count = 0;
-        for (TilePosition defense : defenses) {
-            UnitType type = JBWEB.isUsed(defense, 1, 1);
-            if (type == UnitType.Protoss_Photon_Cannon
-                    || type == UnitType.Zerg_Spore_Colony
-                    || type == UnitType.Terran_Missile_Turret) {
-                count++;
-            }
-        }
-        return count;
+        return defenseCounter.getAir();
+    }
+
+    // Counts defenses at the defense locations once the Wall is stored
+    void trackDefenses() {
+        defenseCounter.addLocations(defenses);
+    }
+
+    // Stops counting defenses once another Wall replaces this one
+    void untrackDefenses() {
+        defenseCounter.removeLocations(defenses);
     }
 
     /// Draws all the features of the Wall.
@@ -0,0 +1,100 @@
+package jbweb;
+
+import bwapi.*;
+
+import java.util.Arrays;
+
+public class WallLayout {
+    private static final UnitType[] types = UnitType.values();
+
+    // Each entry packs the BWAPI::TilePosition and BWAPI::UnitType of a piece as x << 24 | y << 16 | type
+    private int[] entries;
+    private int size = 0;
+    private long hash = 0;
+
+    /// Creates an empty layout with room for the given number of pieces.
+    WallLayout(int capacity) {
+        entries = new int[Math.max(1, capacity)];
+    }
+
+    // Zobrist key of a packed entry, mixed with splitmix64 so no random table is needed
+    private static long zobrist(int entry) {
+        long z = (entry & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /// Returns the Zobrist hash of the pieces in the layout, which doesn't depend on the order they were added in.
+    long getHash() {
+        return hash;
+    }
+
+    /// Returns the number of pieces in the layout.
+    int size() {
+        return size;
+    }
+
+    /// Returns true if the layout has no pieces.
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /// Removes every piece.
+    void clear() {
+        size = 0;
+        hash = 0;
+    }
+
+    /// Adds a piece of the given BWAPI::UnitType at a BWAPI::TilePosition.
+    void add(TilePosition here, UnitType type) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size] = (here.x << 24) | (here.y << 16) | type.ordinal();
+        hash ^= zobrist(entries[size]);
+        size++;
+    }
+
+    /// Removes the piece most recently added at a BWAPI::TilePosition.
+    void remove(TilePosition here) {
+        for (int i = size - 1; i >= 0; i--) {
+            if (getX(i) == here.x && getY(i) == here.y) {
+                hash ^= zobrist(entries[i]);
+                System.arraycopy(entries, i + 1, entries, i, size - i - 1);
+                size--;
+                return;
+            }
+        }
+    }
+
+    /// Returns the x of the BWAPI::TilePosition of a piece.
+    int getX(int i) {
+        return entries[i] >>> 24;
+    }
+
+    /// Returns the y of the BWAPI::TilePosition of a piece.
+    int getY(int i) {
+        return (entries[i] >>> 16) & 0xFF;
+    }
+
+    /// Returns the BWAPI::TilePosition of a piece.
+    TilePosition getTile(int i) {
+        return new TilePosition(getX(i), getY(i));
+    }
+
+    /// Returns the BWAPI::UnitType of a piece.
+    UnitType getType(int i) {
+        return types[entries[i] & 0xFFFF];
+    }
+
+    /// Replaces this layout with a copy of another.
+    void copyFrom(WallLayout other) {
+        if (entries.length < other.size) {
+            entries = new int[other.entries.length];
+        }
+        System.arraycopy(other.entries, 0, entries, 0, other.size);
+        size = other.size;
+        hash = other.hash;
+    }
+}
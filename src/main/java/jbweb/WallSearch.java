@@ -0,0 +1,70 @@
+package jbweb;
+
+public class WallSearch {
+    private final Wall wall;
+    private final long startTime;
+    private Wall result;
+    private boolean finished;
+    private int steps = 0;
+
+    // A search that is still running
+    WallSearch(Wall _wall, long _startTime) {
+        wall = _wall;
+        startTime = _startTime;
+    }
+
+    // A Wall that already existed, nothing left to search
+    WallSearch(Wall existing) {
+        wall = existing;
+        startTime = System.currentTimeMillis();
+        result = existing;
+        finished = true;
+    }
+
+    /// Continues the search for up to the given amount of milliseconds. Returns true once every permutation has been searched.
+    /// <param name="timeLimit"> The amount of milliseconds to spend searching this call.
+    public boolean step(double timeLimit) {
+        if (finished) {
+            return wall.isSearchComplete();
+        }
+        steps++;
+        return wall.search(timeLimit);
+    }
+
+    /// Returns true if every permutation has been searched.
+    public boolean isComplete() {
+        return wall.isSearchComplete();
+    }
+
+    /// Returns true once finish has been called.
+    public boolean isFinished() {
+        return finished;
+    }
+
+    // Returns true if the best layout so far overlaps tiles reserved or used after the search started
+    boolean overlapsTaken() {
+        return !finished && wall.overlapsTaken();
+    }
+
+    /// Returns the statistics of the search so far, complete once finish has been called.
+    public WallSearchStats getStats() {
+        return wall.getStats();
+    }
+
+    /// Places the best layout found so far and returns the Wall, or null if no valid layout was found.
+    /// If the search was continued across several steps, a layout overlapping buildings or reservations added since it started isn't placed and also returns null.
+    /// Further calls return the same result.
+    public Wall finish() {
+        return finish(steps > 1);
+    }
+
+    // Searches that ran on another thread also check for tiles taken on the game thread while searching
+    Wall finish(boolean dropTaken) {
+        if (!finished) {
+            wall.finish(dropTaken);
+            result = Walls.storeWall(wall, startTime);
+            finished = true;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,142 @@
+package jbweb;
+
+public class WallSearchStats {
+    /// The checks a candidate placement goes through, in the order they run.
+    public enum Check {
+        Valid, Bound, Notable, Seal, Power, Angle, Placement, Tight, Spawn, Path
+    }
+
+    private final long[] rejections = new long[Check.values().length];
+    private final long[] checkNanos = new long[Check.values().length];
+    private long evaluated, pathSearches, transpositionHits, searchNanos;
+    private int permutations;
+    private int minXEvaluated = Integer.MAX_VALUE, minYEvaluated = Integer.MAX_VALUE, maxXEvaluated = Integer.MIN_VALUE, maxYEvaluated = Integer.MIN_VALUE;
+    private long generationTime;
+    private boolean searchComplete, wallFound;
+
+    // Counts a candidate placement that was evaluated
+    void evaluate(int x, int y) {
+        evaluated++;
+        minXEvaluated = Math.min(minXEvaluated, x);
+        minYEvaluated = Math.min(minYEvaluated, y);
+        maxXEvaluated = Math.max(maxXEvaluated, x);
+        maxYEvaluated = Math.max(maxYEvaluated, y);
+    }
+
+    // Counts a candidate placement or layout rejected by a check
+    void reject(Check check) {
+        rejections[check.ordinal()]++;
+    }
+
+    // Adds the time spent in a check
+    void time(Check check, long nanos) {
+        checkNanos[check.ordinal()] += nanos;
+    }
+
+    void addPathSearch() {
+        pathSearches++;
+    }
+
+    void addTranspositionHit() {
+        transpositionHits++;
+    }
+
+    void addSearchTime(long nanos) {
+        searchNanos += nanos;
+    }
+
+    void setPermutations(int _permutations) {
+        permutations = _permutations;
+    }
+
+    void setResult(long _generationTime, boolean _searchComplete, boolean _wallFound) {
+        generationTime = _generationTime;
+        searchComplete = _searchComplete;
+        wallFound = _wallFound;
+    }
+
+    // Adds the counters of a worker that searched part of the permutations
+    void merge(WallSearchStats worker) {
+        for (int i = 0; i < rejections.length; i++) {
+            rejections[i] += worker.rejections[i];
+            checkNanos[i] += worker.checkNanos[i];
+        }
+        evaluated += worker.evaluated;
+        pathSearches += worker.pathSearches;
+        transpositionHits += worker.transpositionHits;
+        minXEvaluated = Math.min(minXEvaluated, worker.minXEvaluated);
+        minYEvaluated = Math.min(minYEvaluated, worker.minYEvaluated);
+        maxXEvaluated = Math.max(maxXEvaluated, worker.maxXEvaluated);
+        maxYEvaluated = Math.max(maxYEvaluated, worker.maxYEvaluated);
+    }
+
+    /// Returns the number of candidate placements or layouts rejected by a check.
+    public long getRejections(Check check) {
+        return rejections[check.ordinal()];
+    }
+
+    /// Returns the nanoseconds spent in a check, only measured while Walls::timeChecks is enabled.
+    public long getCheckNanos(Check check) {
+        return checkNanos[check.ordinal()];
+    }
+
+    /// Returns the number of candidate placements evaluated.
+    public long getEvaluated() {
+        return evaluated;
+    }
+
+    /// Returns the number of breadth first searches run to find the path out of the wall.
+    public long getPathSearches() {
+        return pathSearches;
+    }
+
+    /// Returns the number of layouts that were already scored through another permutation.
+    public long getTranspositionHits() {
+        return transpositionHits;
+    }
+
+    /// Returns the number of permutations of buildings searched.
+    public int getPermutations() {
+        return permutations;
+    }
+
+    /// Returns the nanoseconds spent searching permutations, across every call to WallSearch::step.
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    /// Returns the milliseconds from the start of the search until the Wall was finished.
+    public long getGenerationTime() {
+        return generationTime;
+    }
+
+    /// Returns the smallest x of any BWAPI::TilePosition evaluated.
+    public int getMinXEvaluated() {
+        return minXEvaluated;
+    }
+
+    /// Returns the smallest y of any BWAPI::TilePosition evaluated.
+    public int getMinYEvaluated() {
+        return minYEvaluated;
+    }
+
+    /// Returns the largest x of any BWAPI::TilePosition evaluated.
+    public int getMaxXEvaluated() {
+        return maxXEvaluated;
+    }
+
+    /// Returns the largest y of any BWAPI::TilePosition evaluated.
+    public int getMaxYEvaluated() {
+        return maxYEvaluated;
+    }
+
+    /// Returns true if every permutation was searched.
+    public boolean isSearchComplete() {
+        return searchComplete;
+    }
+
+    /// Returns true if a valid layout was found and the Wall was stored.
+    public boolean isWallFound() {
+        return wallFound;
+    }
+}
@@ -0,0 +1,54 @@
+package jbweb;
+
+import bwapi.*;
+import bwem.Area;
+import bwem.ChokePoint;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+public class WallSpec {
+    final List<UnitType> buildings;
+    final Area area;
+    final ChokePoint choke;
+    final UnitType tightType;
+    final List<UnitType> defenses;
+    final boolean openWall, requireTight;
+
+    /// Describes a Wall to create with Walls::createWalls, takes the same parameters as Walls::createWall.
+    public WallSpec(List<UnitType> _buildings, Area _area, ChokePoint _choke, UnitType _tightType, List<UnitType> _defenses, boolean _openWall, boolean _requireTight) {
+        buildings = _buildings;
+        area = _area;
+        choke = _choke;
+        tightType = _tightType;
+        defenses = _defenses;
+        openWall = _openWall;
+        requireTight = _requireTight;
+    }
+
+    /// Returns a WallSpec for every unblocked ChokePoint of an Area, each with its own copy of the buildings and defenses.
+    /// Neighboring Areas share ChokePoints, Walls::createWalls only searches the first spec for each ChokePoint.
+    public static List<WallSpec> forArea(Area area, List<UnitType> buildings, UnitType tightType, List<UnitType> defenses, boolean openWall, boolean requireTight) {
+        List<WallSpec> specs = new ArrayList<>();
+        if (area == null) {
+            return specs;
+        }
+        for (ChokePoint choke : new LinkedHashSet<>(area.getChokePoints())) {
+            if (!choke.isBlocked()) {
+                specs.add(new WallSpec(new ArrayList<>(buildings), area, choke, tightType, new ArrayList<>(defenses), openWall, requireTight));
+            }
+        }
+        return specs;
+    }
+
+    /// Returns the BWEM::Area the Wall is placed in.
+    public Area getArea() {
+        return area;
+    }
+
+    /// Returns the BWEM::ChokePoint the Wall is placed at.
+    public ChokePoint getChokePoint() {
+        return choke;
+    }
+}
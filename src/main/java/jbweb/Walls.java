@@ -9,26 +9,21 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 public class Walls {
     private static HashMap<ChokePoint, Wall> walls = new HashMap<>();
+    private static SpatialIndex<Wall> wallIndex = new SpatialIndex<>();
+    private static List<PendingWall> pendingWalls = new ArrayList<>();
+    private static final int asyncSearches = 3;
     public static boolean logInfo = false;
+    public static boolean parallelSearch = true;
+    public static boolean timeChecks = false;
 
-    static int failedPlacement = 0;
-    static int failedAngle = 0;
-    static int failedPath = 0;
-    static int failedTight = 0;
-    static int failedSpawn = 0;
-    static int failedPower = 0;
-    static int failedNotable = 0;
-    static int failedValid = 0;
-    static int failedSeal = 0;
-    static int permutations = 0;
-    static int minXEvaluated = Integer.MAX_VALUE;
-    static int minYEvaluated = Integer.MAX_VALUE;
-    static int maxXEvaluated = Integer.MIN_VALUE;
-    static int maxYEvaluated = Integer.MIN_VALUE;
-    static int totalEvaluated = 0;
+    /// Called with the WallSearchStats of every finished Wall search, successful or not. Can be used to record them, for example as JFR events.
+    public static Consumer<WallSearchStats> statsListener = null;
 
     /// Given a vector of UnitTypes, an Area and a Chokepoint, finds an optimal wall placement, returns a valid pointer if a Wall was created.
     /// Note: Highly recommend that only Terran walls attempt to be walled tight, as most Protoss and Zerg wall-ins have gaps to allow your units through.
@@ -41,6 +36,35 @@ public class Walls {
     /// <param name="openWall"> (Optional) Set as true if you want an opening in the wall for unit movement.
     /// <param name="requireTight"> (Optional) Set as true if you want pixel perfect placement.
     public static Wall createWall(List<UnitType> buildings, Area area, ChokePoint choke, UnitType tightType, List<UnitType> defenses, boolean openWall, boolean requireTight) {
+        return createWall(buildings, area, choke, tightType, defenses, openWall, requireTight, Double.MAX_VALUE);
+    }
+
+    /// Same as createWall, but stops searching after the given amount of milliseconds and places the best layout found so far.
+    /// Wall::isSearchComplete returns false if the search ran out of time.
+    /// <param name="timeLimit"> The amount of milliseconds to spend searching.
+    public static Wall createWall(List<UnitType> buildings, Area area, ChokePoint choke, UnitType tightType, List<UnitType> defenses, boolean openWall, boolean requireTight, double timeLimit) {
+        WallSearch search = createWallSearch(buildings, area, choke, tightType, defenses, openWall, requireTight);
+        if (search == null) {
+            return null;
+        }
+        search.step(timeLimit);
+        return search.finish();
+    }
+
+    /// Starts a Wall search that can be continued across frames with WallSearch::step and completed with WallSearch::finish.
+    /// Takes the same parameters as createWall, returns null if the Wall can't be created or the ChokePoint already has an async search pending.
+    public static WallSearch createWallSearch(List<UnitType> buildings, Area area, ChokePoint choke, UnitType tightType, List<UnitType> defenses, boolean openWall, boolean requireTight) {
+        // A ChokePoint being searched on another thread gets its result from that search
+        for (PendingWall pending : pendingWalls) {
+            if (pending.spec.choke == choke) {
+                System.out.println("JBWEB: Can't create a Wall where one is already being searched.");
+                return null;
+            }
+        }
+        return newWallSearch(buildings, area, choke, tightType, defenses, openWall, requireTight);
+    }
+
+    private static WallSearch newWallSearch(List<UnitType> buildings, Area area, ChokePoint choke, UnitType tightType, List<UnitType> defenses, boolean openWall, boolean requireTight) {
         Date date = new Date(System.currentTimeMillis());
         SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd 'at' HH:mm:ss z");
         String timeNow = formatter.format(date);
@@ -75,45 +99,191 @@ public class Walls {
             Wall wall = walls.get(chokePoint);
             if (wall.getArea() == area && wall.getChokePoint() == choke) {
                 System.out.println("JBWEB: Can't create a Wall where one already exists.");
-                return wall;
+                return new WallSearch(wall);
             }
         }
 
-        // Create a Wall
-        Wall wall = new Wall(area, choke, buildings, defenses, tightType, requireTight, openWall);
+        // Create a Wall without searching yet
+        return new WallSearch(new Wall(area, choke, buildings, defenses, tightType, requireTight, openWall, true), date.getTime());
+    }
+
+    /// Creates a Wall for each WallSpec, searching every Wall at the same time.
+    /// Walls are placed in the order of the specs, so earlier specs have priority. A Wall whose layout overlaps one placed before it is searched again.
+    /// Only the first spec for each ChokePoint is searched, later specs for the same ChokePoint get its result.
+    /// Returns the Walls in the order of the specs, with null for any Wall that couldn't be created.
+    public static List<Wall> createWalls(List<WallSpec> specs) {
+        return createWalls(specs, Double.MAX_VALUE);
+    }
+
+    /// Same as createWalls, but stops searching after the given amount of milliseconds in total, including any Walls that are searched again.
+    /// <param name="timeLimit"> The amount of milliseconds to spend searching.
+    public static List<Wall> createWalls(List<WallSpec> specs, double timeLimit) {
+        long until = timeLimit >= Long.MAX_VALUE / 1000000.0 ? Long.MAX_VALUE : System.nanoTime() + (long) (timeLimit * 1000000.0);
+        List<WallSearch> searches = new ArrayList<>();
+        HashMap<ChokePoint, Integer> firstSpec = new HashMap<>();
+        for (int i = 0; i < specs.size(); i++) {
+            WallSpec spec = specs.get(i);
+            if (spec.choke != null && firstSpec.putIfAbsent(spec.choke, i) != null) {
+                searches.add(null);
+                continue;
+            }
+            searches.add(createWallSearch(spec.buildings, spec.area, spec.choke, spec.tightType, spec.defenses, spec.openWall, spec.requireTight));
+        }
+
+        // Search every Wall against the grids as they were before any of them are placed
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for (WallSearch search : searches) {
+            if (search != null && !search.isFinished()) {
+                tasks.add(ForkJoinTask.adapt(() -> search.step(timeLeft(until))));
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        // Place them in priority order, a Wall that overlaps an earlier one searches again around it with the time left
+        List<Wall> created = new ArrayList<>();
+        for (int i = 0; i < specs.size(); i++) {
+            // A ChokePoint already walled by an earlier spec keeps that Wall
+            ChokePoint choke = specs.get(i).choke;
+            if (choke != null && firstSpec.get(choke) != i) {
+                created.add(created.get(firstSpec.get(choke)));
+                continue;
+            }
+
+            WallSearch search = searches.get(i);
+            if (search != null && search.overlapsTaken()) {
+                WallSpec spec = specs.get(i);
+                search = createWallSearch(spec.buildings, spec.area, spec.choke, spec.tightType, spec.defenses, spec.openWall, spec.requireTight);
+                if (search != null) {
+                    search.step(timeLeft(until));
+                }
+            }
+            created.add(search != null ? search.finish() : null);
+        }
+        return created;
+    }
+
+    // Milliseconds left until a System::nanoTime deadline, shared by every search of a batch
+    private static double timeLeft(long until) {
+        return until == Long.MAX_VALUE ? Double.MAX_VALUE : Math.max(0.0, (until - System.nanoTime()) / 1000000.0);
+    }
+
+    // A Wall searching on another thread, finished on the game thread once the search is done
+    private static class PendingWall {
+        final WallSpec spec;
+        final CompletableFuture<Wall> result = new CompletableFuture<>();
+        WallSearch search;
+        CompletableFuture<Void> searched;
+        int searches = 0;
 
+        PendingWall(WallSpec _spec, WallSearch _search) {
+            spec = _spec;
+            start(_search);
+        }
+
+        void start(WallSearch _search) {
+            search = _search;
+            searches++;
+            searched = CompletableFuture.runAsync(() -> _search.step(Double.MAX_VALUE));
+        }
+    }
+
+    /// Same as createWall, but searches on a worker thread against copies of the used and reserved grids.
+    /// The returned future completes during JBWEB::onFrame, once the Wall has been placed on the live grids.
+    /// If buildings or reservations added while searching overlap the layout, the Wall is searched again a few times before it fails.
+    /// Asking again for a ChokePoint that is still being searched returns the pending future.
+    public static CompletableFuture<Wall> createWallAsync(List<UnitType> buildings, Area area, ChokePoint choke, UnitType tightType, List<UnitType> defenses, boolean openWall, boolean requireTight) {
+        for (PendingWall pending : pendingWalls) {
+            if (pending.spec.choke == choke) {
+                return pending.result;
+            }
+        }
+
+        WallSearch search = createWallSearch(buildings, area, choke, tightType, defenses, openWall, requireTight);
+        if (search == null || search.isFinished()) {
+            return CompletableFuture.completedFuture(search != null ? search.finish() : null);
+        }
+
+        PendingWall pending = new PendingWall(new WallSpec(buildings, area, choke, tightType, defenses, openWall, requireTight), search);
+        pendingWalls.add(pending);
+        return pending.result;
+    }
+
+    /// Finishes any Walls whose search completed on a worker thread. Called from JBWEB::onFrame.
+    static void onFrame() {
+        pendingWalls.removeIf(pending -> {
+            if (!pending.searched.isDone()) {
+                return false;
+            }
+            try {
+                pending.searched.join();
+
+                // Search again against the live grids if the layout overlaps anything taken on the game thread meanwhile
+                if (pending.searches < asyncSearches && pending.search.overlapsTaken()) {
+                    WallSpec spec = pending.spec;
+                    WallSearch search = newWallSearch(spec.buildings, spec.area, spec.choke, spec.tightType, spec.defenses, spec.openWall, spec.requireTight);
+                    if (search != null && !search.isFinished()) {
+                        pending.start(search);
+                        return false;
+                    }
+                    pending.result.complete(search != null ? search.finish() : null);
+                    return true;
+                }
+
+                // Otherwise finish places it, a layout that still overlaps fails the Wall
+                pending.result.complete(pending.search.finish(true));
+            } catch (RuntimeException e) {
+                pending.result.completeExceptionally(e);
+            }
+            return true;
+        });
+    }
+
+    // Logs the result of a finished Wall and stores it if it was successful
+    static Wall storeWall(Wall wall, long startTime) {
         // Verify the Wall creation was successful
         boolean wallFound = (wall.getSmallTiles().size() + wall.getMediumTiles().size() + wall.getLargeTiles().size()) == wall.getRawBuildings().size();
 
+        WallSearchStats stats = wall.getStats();
+        stats.setResult(System.currentTimeMillis() - startTime, wall.isSearchComplete(), wallFound);
+
         // Log information
         if (logInfo) {
             System.out.println("Failure Reasons:");
-            System.out.println("Power: " + failedPower);
-            System.out.println("Angle: " + failedAngle);
-            System.out.println("Placement: " + failedPlacement);
-            System.out.println("Tight: " + failedTight);
-            System.out.println("Path: " + failedPath);
-            System.out.println("Spawn: " + failedSpawn);
-            System.out.println("Seal: " + failedSeal);
-            System.out.println("Notable: " + failedNotable);
-            System.out.println("Invalid: " + failedValid);
-            System.out.println("Permutations: " + permutations);
-            System.out.println("Min X Evaluated: " + minXEvaluated);
-            System.out.println("Min Y Evaluated: " + minYEvaluated);
-            System.out.println("Max X Evaluated: " + maxXEvaluated);
-            System.out.println("Max Y Evaluated: " + maxYEvaluated);
-            System.out.println("Total Evaluated: " + totalEvaluated);
+            for (WallSearchStats.Check check : WallSearchStats.Check.values()) {
+                System.out.println(check + ": " + stats.getRejections(check) + (timeChecks ? " in " + stats.getCheckNanos(check) / 1000000 + "ms" : ""));
+            }
+            System.out.println("Permutations: " + stats.getPermutations());
+            System.out.println("Path Searches: " + stats.getPathSearches());
+            System.out.println("Transposition Hits: " + stats.getTranspositionHits());
+            System.out.println("Min X Evaluated: " + stats.getMinXEvaluated());
+            System.out.println("Min Y Evaluated: " + stats.getMinYEvaluated());
+            System.out.println("Max X Evaluated: " + stats.getMaxXEvaluated());
+            System.out.println("Max Y Evaluated: " + stats.getMaxYEvaluated());
+            System.out.println("Total Evaluated: " + stats.getEvaluated());
+            System.out.println("Search Complete: " + stats.isSearchComplete());
             System.out.println("\n");
 
-            date = new Date(System.currentTimeMillis() - date.getTime());
-            System.out.println("Generation Time: " + date.getTime() + "ms and " + (wallFound ? "successful." : "failed."));
+            System.out.println("Search Time: " + stats.getSearchNanos() / 1000000 + "ms");
+            System.out.println("Generation Time: " + stats.getGenerationTime() + "ms and " + (wallFound ? "successful." : "failed."));
             System.out.println("--------------------");
         }
 
+        if (statsListener != null) {
+            statsListener.accept(stats);
+        }
+
         // If we found a suitable Wall, push into container and return pointer to it
         if (wallFound) {
-            walls.replace(choke, wall);
-            return walls.get(choke);
+            wall.trackDefenses();
+            TilePosition chokeTile = new TilePosition(wall.getChokePoint().getCenter());
+            Wall replaced = walls.put(wall.getChokePoint(), wall);
+            if (replaced != null && replaced != wall) {
+                wallIndex.remove(chokeTile, replaced);
+                replaced.untrackDefenses();
+                replaced.release();
+            }
+            wallIndex.add(chokeTile, wall);
+            return walls.get(wall.getChokePoint());
         }
 
         return null;
@@ -171,18 +341,7 @@ public class Walls {
 
     /// Returns the closest Wall to the given TilePosition.
     public static Wall getClosestWall(TilePosition here) {
-        double distBest = Double.MAX_VALUE;
-        Wall bestWall = null;
-        for (ChokePoint chokePoint : walls.keySet()) {
-            Wall wall = walls.get(chokePoint);
-            double dist = here.getDistance(new TilePosition(wall.getChokePoint().getCenter()));
-
-        if (dist < distBest) {
-            distBest = dist;
-            bestWall = wall;
-        }
-    }
-        return bestWall;
+        return wallIndex.getClosest(here);
     }
 
     /// Returns a pointer to a Wall if it has been created in the given Area and ChokePoint.